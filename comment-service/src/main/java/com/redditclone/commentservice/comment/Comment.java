@@ -1,49 +1,102 @@
 package com.redditclone.commentservice.comment;
 
-import com.redditclone.commentservice.vote.Score;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 
 @Data
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Document("comments")
+@CompoundIndex(name = "post_parent", def = "{'postId': 1, 'parentId': 1, '_id': 1}")
+@CompoundIndex(name = "post_parent_commented", def = "{'postId': 1, 'parentId': 1, 'commented': -1, '_id': -1}")
+@CompoundIndex(name = "post_parent_score", def = "{'postId': 1, 'parentId': 1, 'score': -1, '_id': -1}")
+@CompoundIndex(name = "author_id", def = "{'author': 1, '_id': 1}")
+@CompoundIndex(name = "author_commented", def = "{'author': 1, 'commented': -1, '_id': -1}")
+@CompoundIndex(name = "author_score", def = "{'author': 1, 'score': -1, '_id': -1}")
+@CompoundIndex(name = "post_path", def = "{'postId': 1, 'path': 1}")
+@CompoundIndex(name = "commented", def = "{'commented': 1}")
 public class Comment {
 
+    public static final String PATH_SEPARATOR = "/";
+
     @Id
     String commentId;
     String postId;
     String parentId;
+    String path;
+    int depth;
     String author;
     String body;
     long score;
     Instant commented;
     Instant edited;
     boolean deleted;
+    @Transient
+    String cursor;
 
+    /**
+     * Creates a root comment, or a reply whose path is left unset for {@link CommentPathBackfill} when its parent
+     * has no path yet. Use {@link #replyTo} to place a reply under a parent with a path.
+     */
     public static Comment of(String postId, String parentId, String author, String body) {
-        return new Comment(
+        Comment comment = new Comment(
                 null,
                 postId,
                 parentId,
+                null,
+                0,
                 author,
                 body,
                 0L,
                 Instant.now().truncatedTo(ChronoUnit.MILLIS),
                 null,
-                false
+                false,
+                null
         );
+        return parentId == null ? comment.placeAsRoot() : comment;
+    }
+
+    public static Comment replyTo(Comment parent, String author, String body) {
+        return Comment
+                .of(parent.getPostId(), parent.getCommentId(), author, body)
+                .placeUnder(parent);
+    }
+
+    public Comment placeAsRoot() {
+        path = "";
+        depth = 0;
+        return this;
+    }
+
+    public Comment placeUnder(Comment parent) {
+        path = parent.descendantsPath();
+        depth = parent.getDepth() + 1;
+        return this;
     }
 
-    public Comment updateScoreWith(Score score) {
-        this.score = score.getScore();
+    public Comment placeUnderUnknownParent() {
+        path = parentId + PATH_SEPARATOR;
+        depth = 1;
+        return this;
+    }
+
+    public String descendantsPath() {
+        return path + commentId + PATH_SEPARATOR;
+    }
+
+    public Comment incrementScore(long delta) {
+        score += delta;
         return this;
     }
 
@@ -53,6 +106,11 @@ public class Comment {
         return this;
     }
 
+    public Comment withCursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
     public Comment delete() {
         deleted = true;
         return this;
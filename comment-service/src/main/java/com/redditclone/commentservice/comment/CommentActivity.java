@@ -0,0 +1,24 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * The comments created on a post minus the comments deleted since the last batch sent to post-service, and the
+ * time of the latest comment, if any was created.
+ */
+@Value
+public class CommentActivity {
+
+    String postId;
+    long comments;
+    Instant lastActivity;
+
+    public CommentActivity plus(CommentActivity other) {
+        Instant latest = lastActivity == null || other.lastActivity != null && other.lastActivity.isAfter(lastActivity)
+                ? other.lastActivity
+                : lastActivity;
+        return new CommentActivity(postId, comments + other.comments, latest);
+    }
+}
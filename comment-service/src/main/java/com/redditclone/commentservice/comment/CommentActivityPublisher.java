@@ -0,0 +1,175 @@
+package com.redditclone.commentservice.comment;
+
+import com.redditclone.commentservice.configuration.UserClaimPayloadInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the comments created and deleted per post to post-service, which keeps the comment count and last
+ * activity of its posts. Changes are merged per post and sent as one batch on a timer or once {@code flush-size}
+ * posts changed. A batch that cannot be delivered is dropped rather than retried, as post-service increments by
+ * it and may have applied it before failing. To correct such drift, the comments of posts commented on within
+ * {@code reconcile.window} are recounted every {@code reconcile.interval} and sent as well, less the activity
+ * recorded since that is not sent yet, and post-service updates the posts whose count differs. Calls are
+ * authenticated with a service claim, so enabling it without {@code oauth2.user-claims.secret} fails the start.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "comments.activity.enabled", havingValue = "true")
+public class CommentActivityPublisher {
+
+    private static final MimeType SERVICE_CLAIM = MimeTypeUtils.parseMimeType(UserClaimPayloadInterceptor.SERVICE_CLAIM_MIME_TYPE);
+
+    private final CommentRepository commentRepo;
+    private final RSocketRequester postService;
+    private final UserClaimPayloadInterceptor claims;
+
+    private final Scheduler flusher = Schedulers.fromExecutorService(
+            Executors.newSingleThreadScheduledExecutor(), "comment-activity-flush");
+
+    @Value("${comments.activity.service:comment-service}")
+    private String service;
+
+    @Value("${comments.activity.flush-size:500}")
+    private int flushSize;
+
+    @Value("${comments.activity.flush-interval:1s}")
+    private Duration flushInterval;
+
+    @Value("${comments.activity.reconcile.interval:PT10M}")
+    private Duration reconcileInterval;
+
+    @Value("${comments.activity.reconcile.window:7d}")
+    private Duration reconcileWindow;
+
+    private Map<String, CommentActivity> pending = new HashMap<>();
+
+    public CommentActivityPublisher(CommentRepository commentRepo,
+                                    RSocketRequester.Builder requesterBuilder,
+                                    @Value("${comments.activity.post-service.host:localhost}") String host,
+                                    @Value("${comments.activity.post-service.port:7001}") int port,
+                                    @Value("${oauth2.user-claims.secret:}") String userClaimsSecret) {
+        this.commentRepo = commentRepo;
+        this.postService = requesterBuilder.dataMimeType(MediaType.APPLICATION_CBOR).tcp(host, port);
+        this.claims = new UserClaimPayloadInterceptor(userClaimsSecret);
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = flushInterval.toMillis();
+        flusher.schedulePeriodically(this::flushPending, interval, interval, TimeUnit.MILLISECONDS);
+        long reconcile = reconcileInterval.toMillis();
+        flusher.schedulePeriodically(this::reconcile, reconcile, reconcile, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush().block();
+        flusher.dispose();
+        postService.rsocketClient().dispose();
+    }
+
+    public void created(Comment comment) {
+        record(new CommentActivity(comment.getPostId(), 1, comment.getCommented()));
+    }
+
+    public void deleted(Comment comment) {
+        record(new CommentActivity(comment.getPostId(), -1, null));
+    }
+
+    public Mono<Void> flush() {
+        return Mono.<Void>fromRunnable(this::flushPending).subscribeOn(flusher);
+    }
+
+    private void record(CommentActivity activity) {
+        if (offer(activity) >= flushSize) {
+            flush().subscribe();
+        }
+    }
+
+    private synchronized int offer(CommentActivity activity) {
+        pending.merge(activity.getPostId(), activity, CommentActivity::plus);
+        return pending.size();
+    }
+
+    private synchronized List<CommentActivity> drain() {
+        List<CommentActivity> drained = new ArrayList<>(pending.values());
+        pending = new HashMap<>();
+        return drained;
+    }
+
+    private void flushPending() {
+        List<CommentActivity> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            send("apply.comment-activity", batch, Void.class).block();
+        } catch (RuntimeException ex) {
+            log.error("Failed to send the comment activity of {} posts", batch.size(), ex);
+        }
+    }
+
+    private void reconcile() {
+        flushPending();
+        try {
+            Long reconciled = commentRepo
+                    .countByPost(Instant.now().minus(reconcileWindow))
+                    .buffer(flushSize)
+                    .concatMap(counts -> send("reconcile.comment-counts", withoutPending(counts), Long.class)
+                            .retryWhen(Retry.backoff(2, Duration.ofMillis(200))))
+                    .reduce(0L, Long::sum)
+                    .block();
+            log.debug("Reconciled the comment count of {} posts", reconciled);
+        } catch (RuntimeException ex) {
+            log.error("Comment count reconciliation failed", ex);
+        }
+    }
+
+    /**
+     * Takes the activity recorded after the counts were read off them, as it will be sent as well. A comment created
+     * or deleted since the last flush is then counted once, by the counts or by its activity, and not by both.
+     */
+    private synchronized List<CommentCount> withoutPending(List<CommentCount> counts) {
+        if (pending.isEmpty()) {
+            return counts;
+        }
+        List<CommentCount> corrected = new ArrayList<>(counts.size());
+        for (CommentCount count : counts) {
+            CommentActivity activity = pending.get(count.getPostId());
+            corrected.add(activity == null
+                    ? count
+                    : new CommentCount(count.getPostId(), count.getCount() - activity.getComments(), count.getLastActivity()));
+        }
+        return corrected;
+    }
+
+    private <T> Mono<T> send(String route, Object data, Class<T> responseType) {
+        return Mono.defer(() -> postService
+                .route(route)
+                .metadata(claims.issueForService(service, Instant.now().plus(Duration.ofMinutes(1))), SERVICE_CLAIM)
+                .data(data)
+                .retrieveMono(responseType));
+    }
+}
@@ -0,0 +1,37 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A compact notice that a comment changed, for consumers that cache comment trees. Only the comment id is
+ * always set. The ancestor ids name the subtrees the change shows up in, from the root down.
+ */
+@Value
+public class CommentChange {
+
+    Type type;
+    String commentId;
+    String postId;
+    String author;
+    List<String> ancestorIds;
+
+    public static CommentChange of(Type type, Comment comment) {
+        List<String> ancestorIds = comment.getPath() == null ? List.of() : Arrays
+                .stream(comment.getPath().split(Comment.PATH_SEPARATOR))
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toList());
+        return new CommentChange(type, comment.getCommentId(), comment.getPostId(), comment.getAuthor(), ancestorIds);
+    }
+
+    public static CommentChange scored(String commentId) {
+        return new CommentChange(Type.SCORED, commentId, null, null, List.of());
+    }
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, SCORED
+    }
+}
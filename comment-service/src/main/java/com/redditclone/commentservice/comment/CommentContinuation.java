@@ -0,0 +1,39 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+@Value
+public class CommentContinuation {
+
+    private static final String SEPARATOR = ":";
+
+    String parentId;
+    int offset;
+
+    public static CommentContinuation of(String parentId, int offset) {
+        return new CommentContinuation(parentId, offset);
+    }
+
+    public static CommentContinuation decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf(SEPARATOR);
+            int offset = Integer.parseInt(decoded.substring(separator + 1));
+            if (separator < 1 || offset < 0) {
+                throw new IllegalArgumentException(decoded);
+            }
+            return new CommentContinuation(decoded.substring(0, separator), offset);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new InvalidContinuationException(token, ex);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((parentId + SEPARATOR + offset).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -22,12 +22,45 @@ public class CommentController {
         return commentService.findCommentsByPostId(postId, request);
     }
 
+    @MessageMapping("find.comments.post.{postId}.flat")
+    public Mono<FlatCommentTree> findFlatCommentsByPostId(@DestinationVariable String postId,
+                                                          CommentRequest request) {
+        return commentService.findFlatCommentsByPostId(postId, request);
+    }
+
+    @MessageMapping("find.comments.subtree.{commentId}")
+    public Mono<CommentTree> findCommentSubtree(@DestinationVariable String commentId,
+                                                CommentRequest request) {
+        return commentService.findCommentSubtree(commentId, request);
+    }
+
+    @MessageMapping("find.comments.continuation.{continuation}")
+    public Mono<CommentTree> findCommentContinuation(@DestinationVariable String continuation,
+                                                     CommentRequest request) {
+        return commentService.findCommentContinuation(continuation, request);
+    }
+
     @MessageMapping("find.comments.user.{username}")
     public Flux<Comment> findCommentsByUsername(@DestinationVariable String username,
                                                 CommentRequest request) {
         return commentService.findCommentsByUsername(username, request);
     }
 
+    @MessageMapping("stream.comments.post.{postId}")
+    public Flux<CommentDelta> streamCommentsByPostId(@DestinationVariable String postId) {
+        return commentService.streamCommentsByPostId(postId);
+    }
+
+    @MessageMapping("stats.comment-tree-cache")
+    public Mono<CommentTreeCacheStats> commentTreeCacheStats() {
+        return Mono.fromSupplier(commentService::commentTreeCacheStats);
+    }
+
+    @MessageMapping("stream.changes")
+    public Flux<CommentChange> streamChanges() {
+        return commentService.streamChanges();
+    }
+
     @MessageMapping("create.comment")
     public Mono<Comment> createComment(@AuthenticationPrincipal Jwt jwt,
                                        CreateComment create) {
@@ -0,0 +1,15 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+
+@Value
+public class CommentCount {
+
+    @Id
+    String postId;
+    long count;
+    Instant lastActivity;
+}
@@ -0,0 +1,45 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonWriterSettings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a comment listing: the sort key of the last comment seen plus its ID as tiebreaker.
+ */
+@Value
+public class CommentCursor {
+
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    Object key;
+    String commentId;
+
+    public static CommentCursor of(Object key, String commentId) {
+        return new CommentCursor(key, commentId);
+    }
+
+    public static CommentCursor decode(String token) {
+        try {
+            Document decoded = Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            String commentId = decoded.getString("id");
+            if (commentId == null || !decoded.containsKey("key")) {
+                throw new IllegalArgumentException(decoded.toJson());
+            }
+            return new CommentCursor(decoded.get("key"), commentId);
+        } catch (IllegalArgumentException | ClassCastException | JsonParseException ex) {
+            throw new InvalidCursorException(token, ex);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(new Document("key", key).append("id", commentId).toJson(JSON).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,14 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+
+/**
+ * A change of a comment pushed to live subscribers of its post, with the comment as it is after the change.
+ */
+@Value
+public class CommentDelta {
+
+    CommentChange.Type type;
+    Comment comment;
+
+}
@@ -0,0 +1,71 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Computes the materialized path of comments stored before paths existed, and of replies created under a parent
+ * that had none yet. Only comments without a path are selected, so the job can be stopped at any time and resumes
+ * where it left off on the next start. It runs on every start unless disabled, and runs again every
+ * {@code recheck-interval} until a run finds no comment without a path.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "comments.path-backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class CommentPathBackfill implements ApplicationRunner {
+
+    private final CommentRepository commentRepo;
+
+    @Value("${comments.path-backfill.batch-size:500}")
+    private int batchSize;
+
+    @Value("${comments.path-backfill.recheck-interval:1m}")
+    private Duration recheckInterval;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        backfill()
+                .expand(count -> count == 0 ? Mono.empty() : backfill().delaySubscription(recheckInterval))
+                .filter(count -> count > 0)
+                .subscribe(
+                        count -> log.info("Backfilled the path of {} comments", count),
+                        ex -> log.error("Comment path backfill failed", ex));
+    }
+
+    public Mono<Long> backfill() {
+        return backfillBatches(0L);
+    }
+
+    private Mono<Long> backfillBatches(long backfilled) {
+        return commentRepo
+                .findWithoutPath(batchSize)
+                .concatMap(this::backfillPath)
+                .count()
+                .flatMap(count -> count == 0
+                        ? Mono.just(backfilled)
+                        : backfillBatches(backfilled + count));
+    }
+
+    private Mono<Comment> backfillPath(Comment comment) {
+        if (comment.getPath() != null) {
+            return Mono.just(comment);
+        }
+        Mono<Comment> placed = comment.getParentId() == null
+                ? Mono.just(comment.placeAsRoot())
+                : commentRepo
+                        .findById(comment.getParentId())
+                        .flatMap(this::backfillPath)
+                        .map(comment::placeUnder)
+                        .switchIfEmpty(Mono.fromSupplier(comment::placeUnderUnknownParent));
+        return placed.flatMap(it -> commentRepo.updatePath(it).thenReturn(it));
+    }
+}
@@ -9,35 +9,77 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
+import java.util.Date;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Data
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class CommentRequest {
 
+    public static final String ID = "_id";
+    public static final int DEFAULT_MAX_DEPTH = 10;
+    public static final int MAX_DEPTH_LIMIT = 50;
+    public static final int DEFAULT_MAX_NODES = 200;
+    public static final int MAX_NODES_LIMIT = 1_000;
+
     Integer page;
     Integer size;
     SortBy sort;
+    Integer maxDepth;
+    Integer maxNodes;
+    String after;
 
     @Getter
     public enum SortBy {
-        NEW(Sort.by("commented").descending()),
-        OLD(Sort.by("commented").ascending()),
-        TOP(Sort.by("score").descending());
+        NEW(Sort.by(Sort.Direction.DESC, "commented", ID), comment -> Date.from(comment.getCommented())),
+        OLD(Sort.by(Sort.Direction.ASC, "commented", ID), comment -> Date.from(comment.getCommented())),
+        TOP(Sort.by(Sort.Direction.DESC, "score", ID), Comment::getScore);
 
         Sort sort;
+        Function<Comment, Object> key;
 
-        SortBy(Sort sort) {
+        SortBy(Sort sort, Function<Comment, Object> key) {
             this.sort = sort;
+            this.key = key;
         }
     }
 
     public Pageable toPageable() {
         return PageRequest.of(
                 Optional.ofNullable(page).orElse(0),
-                Optional.ofNullable(size).orElse(10),
-                Optional.ofNullable(sort).map(SortBy::getSort).orElse(Sort.unsorted())
+                toSize(),
+                toSort()
         );
     }
+
+    public Sort toSort() {
+        return Optional.ofNullable(sort).map(SortBy::getSort).orElse(Sort.by(ID));
+    }
+
+    public int toSize() {
+        return Optional.ofNullable(size).orElse(10);
+    }
+
+    public Optional<CommentCursor> toAfter() {
+        return Optional.ofNullable(after).map(CommentCursor::decode);
+    }
+
+    public String cursorOf(Comment comment) {
+        Object key = Optional.ofNullable(sort).map(it -> it.getKey().apply(comment)).orElse(null);
+        return CommentCursor.of(key, comment.getCommentId()).encode();
+    }
+
+    public int toMaxDepth() {
+        return clamp(Optional.ofNullable(maxDepth).orElse(DEFAULT_MAX_DEPTH), MAX_DEPTH_LIMIT);
+    }
+
+    public int toMaxNodes() {
+        return clamp(Optional.ofNullable(maxNodes).orElse(DEFAULT_MAX_NODES), MAX_NODES_LIMIT);
+    }
+
+    private static int clamp(int value, int limit) {
+        return Math.max(0, Math.min(value, limit));
+    }
 }
@@ -1,63 +1,111 @@
 package com.redditclone.commentservice.comment;
 
+import com.redditclone.commentservice.vote.VoteBuffer;
 import com.redditclone.commentservice.vote.VoteService;
 import com.redditclone.commentservice.vote.VoteType;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class CommentService {
 
     private final CommentRepository commentRepo;
     private final VoteService voteService;
+    private final Optional<VoteBuffer> voteBuffer;
+    private final CommentTreeLoader commentTreeLoader;
+    private final CommentChanges commentChanges;
+    private final LiveComments liveComments;
+    private final CommentTreeCache commentTreeCache;
+    private final Optional<CommentActivityPublisher> commentActivity;
 
     public Flux<CommentTree> findCommentsByPostId(String postId, CommentRequest request) {
-        Pageable pageable = request.toPageable();
-        return commentRepo
-                .findByPostIdAndParentIdNull(postId, pageable)
-                .flatMapSequential(parent -> findChildrenByParentId(parent.getCommentId(), pageable.getSort())
-                        .collectList()
-                        .map(children -> CommentTree.of(parent, children)));
+        return findPageOfTrees(postId, request).flatMapIterable(trees -> trees);
     }
 
-    private Flux<CommentTree> findChildrenByParentId(String parentId, Sort sort) {
-        return commentRepo
-                .findByParentId(parentId, sort)
-                .flatMapSequential(childAsParent -> findChildrenByParentId(childAsParent.getCommentId(), sort)
-                        .collectList()
-                        .map(children -> CommentTree.of(childAsParent, children)));
+    public Mono<FlatCommentTree> findFlatCommentsByPostId(String postId, CommentRequest request) {
+        return findPageOfTrees(postId, request).map(trees -> FlatCommentTree.of(postId, trees));
+    }
+
+    private Mono<List<CommentTree>> findPageOfTrees(String postId, CommentRequest request) {
+        return commentTreeCache.get(postId, request, () -> commentRepo
+                .findPageOfRoots(postId, request)
+                .collectList()
+                .flatMap(roots -> commentTreeLoader.load(roots, request)
+                        .map(trees -> withCursors(roots, trees, request))));
+    }
+
+    public CommentTreeCacheStats commentTreeCacheStats() {
+        return commentTreeCache.stats();
+    }
+
+    public Mono<CommentTree> findCommentSubtree(String commentId, CommentRequest request) {
+        return findCommentById(commentId)
+                .flatMap(comment -> commentTreeLoader.load(List.of(comment), request))
+                .map(trees -> trees.get(0));
+    }
+
+    public Mono<CommentTree> findCommentContinuation(String continuation, CommentRequest request) {
+        return Mono.fromCallable(() -> CommentContinuation.decode(continuation))
+                .flatMap(it -> findCommentById(it.getParentId())
+                        .flatMap(parent -> commentTreeLoader.loadContinuation(parent, it.getOffset(), request)));
     }
 
     public Flux<Comment> findCommentsByUsername(String username, CommentRequest request) {
-        return commentRepo.findByAuthor(username, request.toPageable());
+        return commentRepo
+                .findPageByAuthor(username, request)
+                .map(comment -> comment.withCursor(request.cursorOf(comment)));
+    }
+
+    private List<CommentTree> withCursors(List<Comment> roots, List<CommentTree> trees, CommentRequest request) {
+        return IntStream.range(0, trees.size())
+                .mapToObj(i -> trees.get(i).withCursor(request.cursorOf(roots.get(i))))
+                .collect(Collectors.toList());
+    }
+
+    public Flux<CommentChange> streamChanges() {
+        return commentChanges.stream();
+    }
+
+    public Flux<CommentDelta> streamCommentsByPostId(String postId) {
+        return liveComments.streamPost(postId);
     }
 
     public Mono<Comment> createComment(String username, CreateComment create) {
-        return commentRepo
-                .insert(Comment.of(create.getPostId(), create.getParentId(), username, create.getBody()))
+        return newComment(username, create)
+                .flatMap(commentRepo::insert)
                 .flatMap(comment -> voteService
-                        .voteComment(comment.getCommentId(), VoteType.UPVOTE,  comment.getAuthor())
-                        .then(Mono.defer(() -> updateCommentScore(comment)))
-                        .thenReturn(comment));
+                        .voteComment(comment.getCommentId(), VoteType.UPVOTE, comment.getAuthor())
+                        .flatMap(delta -> commentRepo
+                                .incrementScore(comment.getCommentId(), delta)
+                                .then(Mono.fromSupplier(() -> comment.incrementScore(delta)))))
+                .doOnNext(commentTreeCache::created)
+                .doOnNext(comment -> commentActivity.ifPresent(it -> it.created(comment)))
+                .doOnNext(comment -> commentChanges.publish(CommentChange.of(CommentChange.Type.CREATED, comment)));
     }
 
-    private Mono<Comment> updateCommentScore(Comment comment) {
-        return voteService
-                .calculateScoreByCommentId(comment.getCommentId())
-                .map(comment::updateScoreWith)
-                .flatMap(commentRepo::save);
+    private Mono<Comment> newComment(String username, CreateComment create) {
+        return Mono.justOrEmpty(create.getParentId())
+                .flatMap(commentRepo::findById)
+                .filter(parent -> parent.getPath() != null)
+                .map(parent -> Comment.replyTo(parent, username, create.getBody()))
+                .switchIfEmpty(Mono.fromSupplier(() -> Comment.of(create.getPostId(), create.getParentId(), username, create.getBody())));
     }
 
     public Mono<Comment> editComment(String commentId, String username, EditComment edit) {
         return findCommentById(commentId)
                 .filter(it -> it.getAuthor().equals(username))
                 .map(it -> it.editWith(edit))
-                .flatMap(commentRepo::save)
+                .flatMap(commentRepo::updateContent)
+                .doOnNext(commentTreeCache::updated)
+                .doOnNext(comment -> commentChanges.publish(CommentChange.of(CommentChange.Type.UPDATED, comment)))
                 .switchIfEmpty(Mono.error(new NotAuthorOfCommentException(username, commentId)));
     }
 
@@ -70,17 +118,30 @@ public class CommentService {
     public Mono<Void> deleteComment(String commentId, String username) {
         return findCommentById(commentId)
                 .filter(it -> it.getAuthor().equals(username))
-                .map(Comment::delete)
-                .flatMap(commentRepo::save)
+                .flatMap(it -> {
+                    boolean wasDeleted = it.isDeleted();
+                    return commentRepo
+                            .updateContent(it.delete())
+                            .doOnNext(comment -> commentActivity
+                                    .filter(activity -> !wasDeleted)
+                                    .ifPresent(activity -> activity.deleted(comment)));
+                })
+                .doOnNext(commentTreeCache::updated)
+                .doOnNext(comment -> commentChanges.publish(CommentChange.of(CommentChange.Type.DELETED, comment)))
                 .switchIfEmpty(Mono.error(new NotAuthorOfCommentException(username, commentId)))
                 .then();
     }
 
     public Mono<Void> voteComment(String commentId, VoteType voteType, String username) {
         return findCommentById(commentId)
-                .flatMap(comment -> voteService
-                        .voteComment(comment.getCommentId(), voteType, username)
-                        .then(Mono.defer(() -> updateCommentScore(comment))))
+                .flatMap(comment -> voteBuffer
+                        .map(buffer -> buffer.add(comment.getCommentId(), username, voteType))
+                        .orElseGet(() -> voteService
+                                .voteComment(comment.getCommentId(), voteType, username)
+                                .flatMap(delta -> commentRepo.incrementScoreAndGet(comment.getCommentId(), delta))
+                                .doOnNext(commentTreeCache::scored)
+                                .then()
+                                .doOnSuccess(updated -> commentChanges.publish(CommentChange.scored(comment.getCommentId())))))
                 .then();
     }
 
@@ -1,6 +1,7 @@
 package com.redditclone.commentservice.comment;
 
 import lombok.Value;
+import lombok.With;
 
 import java.time.Instant;
 import java.util.List;
@@ -13,13 +14,27 @@ public class CommentTree {
     String parentId;
     String author;
     String body;
+    @With
     long score;
     Instant commented;
     Instant edited;
     boolean deleted;
+    @With
     List<CommentTree> children;
+    String continuation;
+    @With
+    String cursor;
+
+    public CommentTree withContentOf(Comment comment) {
+        return new CommentTree(commentId, postId, parentId, author, comment.getBody(), score,
+                commented, comment.getEdited(), comment.isDeleted(), children, continuation, cursor);
+    }
 
     public static CommentTree of(Comment parent, List<CommentTree> children) {
+        return of(parent, children, null);
+    }
+
+    public static CommentTree of(Comment parent, List<CommentTree> children, String continuation) {
         return new CommentTree(
                 parent.getCommentId(),
                 parent.getPostId(),
@@ -30,7 +45,9 @@ public class CommentTree {
                 parent.getCommented(),
                 parent.getEdited(),
                 parent.isDeleted(),
-                children
+                children,
+                continuation,
+                null
         );
     }
 }
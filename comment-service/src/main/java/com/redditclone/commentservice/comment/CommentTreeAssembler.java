@@ -0,0 +1,34 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@UtilityClass
+class CommentTreeAssembler {
+
+    /**
+     * Links replies to their parents in a single pass. Replies must be given in the requested sibling order,
+     * which is preserved within each children list. Replies whose parent is not loaded are dropped.
+     * Continuations are attached to the comments they are keyed by.
+     */
+    List<CommentTree> assemble(List<Comment> roots, List<Comment> replies, Map<String, String> continuations) {
+        Map<String, List<CommentTree>> childrenByParentId = new HashMap<>();
+        for (Comment reply : replies) {
+            List<CommentTree> children = childrenByParentId.computeIfAbsent(reply.getCommentId(), id -> new ArrayList<>());
+            childrenByParentId
+                    .computeIfAbsent(reply.getParentId(), id -> new ArrayList<>())
+                    .add(CommentTree.of(reply, children, continuations.get(reply.getCommentId())));
+        }
+        return roots.stream()
+                .map(root -> CommentTree.of(
+                        root,
+                        childrenByParentId.getOrDefault(root.getCommentId(), List.of()),
+                        continuations.get(root.getCommentId())))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,278 @@
+package com.redditclone.commentservice.comment;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the assembled comment trees of post pages, keyed by the post and every request parameter that shapes a
+ * page, and bounded by the number of comments held. Writes through this instance keep it current: a new comment
+ * drops the cached pages of its post, an edit, delete or vote patches the comment wherever it is cached. A vote
+ * drops a page sorted by {@code TOP} instead, as the page order and its cursors depend on scores. Writes through
+ * other instances are seen once entries expire after {@code expire-after-write}.
+ * <p>
+ * Concurrent misses of a page share a single load. Patches that arrive while a page is loading are re-applied to
+ * the loaded trees, while a new comment or a reordering vote keeps them from being cached.
+ */
+@Component
+public class CommentTreeCache {
+
+    private static final int STRIPES = 64;
+
+    private final CommentRepository commentRepo;
+    private final Cache<CommentTreeKey, List<CommentTree>> cache;
+    private final Map<String, Set<CommentTreeKey>> keysByPost = new ConcurrentHashMap<>();
+    private final Map<CommentTreeKey, Load> loads = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder rebuildNanos = new LongAdder();
+    private final LongAdder patches = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public CommentTreeCache(CommentRepository commentRepo,
+                            @Value("${comments.tree-cache.maximum-comments:100000}") long maximumComments,
+                            @Value("${comments.tree-cache.expire-after-write:1m}") Duration expireAfterWrite) {
+        this.commentRepo = commentRepo;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumComments)
+                .weigher((CommentTreeKey key, List<CommentTree> trees) -> Math.max(1, count(trees)))
+                .expireAfterWrite(expireAfterWrite)
+                .writer(new KeyIndexWriter())
+                .recordStats()
+                .build();
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the cached trees of a page, or joins the load of the page building them with the loader.
+     */
+    Mono<List<CommentTree>> get(String postId, CommentRequest request, Supplier<Mono<List<CommentTree>>> loader) {
+        return Mono.defer(() -> {
+            CommentTreeKey key = CommentTreeKey.of(postId, request);
+            List<CommentTree> cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            int stripe = stripe(postId);
+            synchronized (locks[stripe]) {
+                return loads.computeIfAbsent(key, k -> new Load(k, stripe, loader)).trees;
+            }
+        });
+    }
+
+    void created(Comment comment) {
+        int stripe = stripe(comment.getPostId());
+        synchronized (locks[stripe]) {
+            loadsOf(comment.getPostId()).forEach(load -> load.fenced = true);
+            List<CommentTreeKey> keys = keysOf(comment.getPostId());
+            cache.invalidateAll(keys);
+            invalidations.add(keys.size());
+        }
+    }
+
+    void updated(Comment comment) {
+        patch(comment.getPostId(), comment.getCommentId(), false, tree -> tree.withContentOf(comment));
+    }
+
+    void scored(Comment comment) {
+        patch(comment.getPostId(), comment.getCommentId(), true, tree -> tree.withScore(comment.getScore()));
+    }
+
+    /**
+     * Patches the current scores of comments whose score was written without being read back.
+     */
+    public Mono<Void> refreshScores(Collection<String> commentIds) {
+        if (commentIds.isEmpty() || (cache.estimatedSize() == 0 && loads.isEmpty())) {
+            return Mono.empty();
+        }
+        return commentRepo.findScores(commentIds)
+                .doOnNext(this::scored)
+                .then();
+    }
+
+    public void invalidateAll() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (locks[stripe]) {
+                for (Load load : loads.values()) {
+                    if (load.stripe == stripe) {
+                        load.fenced = true;
+                    }
+                }
+            }
+        }
+        cache.invalidateAll();
+    }
+
+    public CommentTreeCacheStats stats() {
+        CacheStats stats = cache.stats();
+        long weight = cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+        long rebuilt = rebuilds.sum();
+        return new CommentTreeCacheStats(
+                cache.estimatedSize(),
+                weight,
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount(),
+                rebuilt,
+                rebuilt == 0 ? 0.0 : rebuildNanos.sum() / 1_000_000.0 / rebuilt,
+                patches.sum(),
+                invalidations.sum());
+    }
+
+    private void patch(String postId, String commentId, boolean reorders, UnaryOperator<CommentTree> change) {
+        int stripe = stripe(postId);
+        synchronized (locks[stripe]) {
+            for (Load load : loadsOf(postId)) {
+                if (reorders && load.key.getSort() == CommentRequest.SortBy.TOP) {
+                    load.fenced = true;
+                } else {
+                    load.patches.add(trees -> replace(trees, commentId, change));
+                }
+            }
+            for (CommentTreeKey key : keysOf(postId)) {
+                cache.asMap().computeIfPresent(key, (k, trees) -> {
+                    List<CommentTree> patched = replace(trees, commentId, change);
+                    if (patched == trees) {
+                        return trees;
+                    }
+                    if (reorders && k.getSort() == CommentRequest.SortBy.TOP) {
+                        invalidations.increment();
+                        return null;
+                    }
+                    patches.increment();
+                    return patched;
+                });
+            }
+        }
+    }
+
+    /**
+     * Caches the loaded trees of a page with the patches that arrived while it was loading, unless it was fenced.
+     */
+    private List<CommentTree> settle(Load load, List<CommentTree> trees, long started) {
+        rebuilds.increment();
+        rebuildNanos.add(System.nanoTime() - started);
+        synchronized (locks[load.stripe]) {
+            loads.remove(load.key, load);
+            for (UnaryOperator<List<CommentTree>> patch : load.patches) {
+                trees = patch.apply(trees);
+            }
+            if (!load.fenced) {
+                cache.put(load.key, trees);
+            }
+            return trees;
+        }
+    }
+
+    private List<CommentTreeKey> keysOf(String postId) {
+        Set<CommentTreeKey> keys = keysByPost.get(postId);
+        return keys == null ? List.of() : List.copyOf(keys);
+    }
+
+    private List<Load> loadsOf(String postId) {
+        if (loads.isEmpty()) {
+            return List.of();
+        }
+        return loads.values().stream()
+                .filter(load -> load.key.getPostId().equals(postId))
+                .collect(Collectors.toList());
+    }
+
+    private static int stripe(String postId) {
+        return Math.floorMod(postId.hashCode(), STRIPES);
+    }
+
+    private static List<CommentTree> replace(List<CommentTree> trees, String commentId, UnaryOperator<CommentTree> change) {
+        if (trees == null) {
+            return null;
+        }
+        for (int i = 0; i < trees.size(); i++) {
+            CommentTree tree = trees.get(i);
+            CommentTree replaced = tree.getCommentId().equals(commentId)
+                    ? change.apply(tree)
+                    : tree.withChildren(replace(tree.getChildren(), commentId, change));
+            if (replaced != tree) {
+                List<CommentTree> patched = new ArrayList<>(trees);
+                patched.set(i, replaced);
+                return patched;
+            }
+        }
+        return trees;
+    }
+
+    private static int count(List<CommentTree> trees) {
+        int count = 0;
+        for (CommentTree tree : trees) {
+            count += 1 + (tree.getChildren() == null ? 0 : count(tree.getChildren()));
+        }
+        return count;
+    }
+
+    /**
+     * A page being built, shared by every miss of the page until it is settled. Its patches and fence are guarded
+     * by the lock of its stripe.
+     */
+    private class Load {
+
+        final CommentTreeKey key;
+        final int stripe;
+        final List<UnaryOperator<List<CommentTree>>> patches = new ArrayList<>();
+        final Mono<List<CommentTree>> trees;
+        boolean fenced;
+
+        Load(CommentTreeKey key, int stripe, Supplier<Mono<List<CommentTree>>> loader) {
+            this.key = key;
+            this.stripe = stripe;
+            this.trees = Mono.defer(() -> {
+                        long started = System.nanoTime();
+                        return loader.get().map(loaded -> settle(this, loaded, started));
+                    })
+                    .doFinally(signal -> loads.remove(key, this))
+                    .cache();
+        }
+    }
+
+    /**
+     * Indexes the cached keys by post as entries are written and removed, so a write to a post finds its pages
+     * without scanning the cache.
+     */
+    private class KeyIndexWriter implements CacheWriter<CommentTreeKey, List<CommentTree>> {
+
+        @Override
+        public void write(CommentTreeKey key, List<CommentTree> trees) {
+            keysByPost.compute(key.getPostId(), (postId, keys) -> {
+                Set<CommentTreeKey> indexed = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                indexed.add(key);
+                return indexed;
+            });
+        }
+
+        @Override
+        public void delete(CommentTreeKey key, List<CommentTree> trees, RemovalCause cause) {
+            keysByPost.computeIfPresent(key.getPostId(), (postId, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+
+@Value
+public class CommentTreeCacheStats {
+
+    long size;
+    long comments;
+    long hits;
+    long misses;
+    double hitRate;
+    long evictions;
+    long rebuilds;
+    double averageRebuildMillis;
+    long patches;
+    long invalidations;
+
+}
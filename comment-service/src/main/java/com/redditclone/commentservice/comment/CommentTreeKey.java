@@ -0,0 +1,28 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+
+import java.util.Optional;
+
+@Value
+class CommentTreeKey {
+
+    String postId;
+    CommentRequest.SortBy sort;
+    int page;
+    int size;
+    String after;
+    int maxDepth;
+    int maxNodes;
+
+    static CommentTreeKey of(String postId, CommentRequest request) {
+        return new CommentTreeKey(
+                postId,
+                request.getSort(),
+                Optional.ofNullable(request.getPage()).orElse(0),
+                request.toSize(),
+                request.getAfter(),
+                request.toMaxDepth(),
+                request.toMaxNodes());
+    }
+}
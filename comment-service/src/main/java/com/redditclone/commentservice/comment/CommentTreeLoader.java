@@ -0,0 +1,80 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads the replies below a set of comments within the depth and node budgets of a request. Replies are read
+ * level by level so that a truncated result is always a connected tree; comments with replies left behind
+ * carry a continuation token that resumes their children where the budget ran out.
+ */
+@Component
+@RequiredArgsConstructor
+class CommentTreeLoader {
+
+    private final CommentRepository commentRepo;
+
+    Mono<List<CommentTree>> load(List<Comment> tops, CommentRequest request) {
+        if (tops.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        int maxDepth = tops.get(0).getDepth() + request.toMaxDepth();
+        int maxNodes = request.toMaxNodes();
+        Mono<List<Comment>> replies = maxNodes == 0 || request.toMaxDepth() == 0
+                ? Mono.just(List.of())
+                : commentRepo.findDescendants(tops, maxDepth, levelOrder(request), maxNodes).collectList();
+        return replies.flatMap(it -> findContinuations(tops, it, maxDepth, it.size() >= maxNodes)
+                .map(continuations -> CommentTreeAssembler.assemble(tops, it, continuations)));
+    }
+
+    Mono<CommentTree> loadContinuation(Comment parent, int offset, CommentRequest request) {
+        int batchSize = request.toSize();
+        return commentRepo
+                .findChildren(parent, request.toSort(), offset, batchSize)
+                .collectList()
+                .flatMap(children -> Mono.zip(
+                        load(children, request),
+                        commentRepo.countReplies(parent.getPostId(), List.of(parent.getCommentId())))
+                        .map(loaded -> CommentTree.of(
+                                parent,
+                                loaded.getT1(),
+                                continuationOf(parent.getCommentId(), offset + children.size(), loaded.getT2()))));
+    }
+
+    private Mono<Map<String, String>> findContinuations(List<Comment> tops,
+                                                        List<Comment> replies,
+                                                        int maxDepth,
+                                                        boolean budgetExhausted) {
+        Map<String, Integer> loadedReplies = replies.stream()
+                .collect(Collectors.groupingBy(Comment::getParentId, Collectors.summingInt(it -> 1)));
+        int deepest = replies.isEmpty() ? tops.get(0).getDepth() : replies.get(replies.size() - 1).getDepth();
+        List<String> truncatable = Stream.concat(tops.stream(), replies.stream())
+                .filter(it -> it.getDepth() == maxDepth || budgetExhausted && it.getDepth() >= deepest - 1)
+                .map(Comment::getCommentId)
+                .collect(Collectors.toList());
+        return commentRepo
+                .countReplies(tops.get(0).getPostId(), truncatable)
+                .map(replyCounts -> truncatable.stream()
+                        .filter(id -> replyCounts.getOrDefault(id, 0L) > loadedReplies.getOrDefault(id, 0))
+                        .collect(Collectors.toMap(
+                                id -> id,
+                                id -> continuationOf(id, loadedReplies.getOrDefault(id, 0), replyCounts))));
+    }
+
+    private String continuationOf(String parentId, int loaded, Map<String, Long> replyCounts) {
+        return replyCounts.getOrDefault(parentId, 0L) > loaded
+                ? CommentContinuation.of(parentId, loaded).encode()
+                : null;
+    }
+
+    private Sort levelOrder(CommentRequest request) {
+        return Sort.by("depth").and(request.toSort());
+    }
+}
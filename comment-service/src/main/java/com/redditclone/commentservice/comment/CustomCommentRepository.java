@@ -0,0 +1,37 @@
+package com.redditclone.commentservice.comment;
+
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface CustomCommentRepository {
+
+    Flux<Comment> findPageOfRoots(String postId, CommentRequest request);
+
+    Flux<Comment> findPageByAuthor(String author, CommentRequest request);
+
+    Flux<Comment> findDescendants(List<Comment> ancestors, int maxDepth, Sort sort, int limit);
+
+    Flux<Comment> findChildren(Comment parent, Sort sort, long skip, int limit);
+
+    Mono<Map<String, Long>> countReplies(String postId, Collection<String> parentIds);
+
+    Flux<CommentCount> countByPost(Instant commentedAfter);
+
+    Flux<Comment> findWithoutPath(int limit);
+
+    Mono<Boolean> updatePath(Comment comment);
+
+    Mono<Void> incrementScore(String commentId, long delta);
+
+    Mono<Comment> incrementScoreAndGet(String commentId, long delta);
+
+    Flux<Comment> findScores(Collection<String> commentIds);
+
+    Mono<Comment> updateContent(Comment comment);
+}
@@ -0,0 +1,242 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class CustomCommentRepositoryImpl implements CustomCommentRepository {
+
+    private final ReactiveMongoOperations mongoOps;
+
+    @Override
+    public Flux<Comment> findPageOfRoots(String postId, CommentRequest request) {
+        return findPage(where("postId").is(postId).and("parentId").is(null), request);
+    }
+
+    @Override
+    public Flux<Comment> findPageByAuthor(String author, CommentRequest request) {
+        return findPage(where("author").is(author), request);
+    }
+
+    /**
+     * Finds the descendants of ancestors with a path by their path prefix. Those of ancestors that the backfill has
+     * not placed yet are found level by level by their parent instead, and given their depth below the ancestor.
+     */
+    @Override
+    public Flux<Comment> findDescendants(List<Comment> ancestors, int maxDepth, Sort sort, int limit) {
+        if (ancestors.isEmpty()) {
+            return Flux.empty();
+        }
+        Map<Boolean, List<Comment>> placed = ancestors.stream()
+                .collect(Collectors.partitioningBy(ancestor -> ancestor.getPath() != null));
+        if (placed.get(false).isEmpty()) {
+            return findDescendantsByPath(placed.get(true), maxDepth, sort, limit);
+        }
+        return Flux.concat(
+                findDescendantsByPath(placed.get(true), maxDepth, sort, limit),
+                findDescendantsByParent(placed.get(false), maxDepth, sort, limit))
+                .sort(Comparator.comparingInt(Comment::getDepth))
+                .take(limit);
+    }
+
+    private Flux<Comment> findDescendantsByPath(List<Comment> ancestors, int maxDepth, Sort sort, int limit) {
+        if (ancestors.isEmpty()) {
+            return Flux.empty();
+        }
+        List<Pattern> pathPrefixes = ancestors.stream()
+                .map(Comment::descendantsPath)
+                .map(CustomCommentRepositoryImpl::prefixPattern)
+                .collect(Collectors.toList());
+        return mongoOps.find(
+                query(where("postId").is(ancestors.get(0).getPostId())
+                        .and("path").in(pathPrefixes)
+                        .and("depth").lte(maxDepth))
+                        .with(sort)
+                        .limit(limit),
+                Comment.class);
+    }
+
+    private Flux<Comment> findDescendantsByParent(List<Comment> parents, int maxDepth, Sort sort, int limit) {
+        if (parents.isEmpty() || limit <= 0) {
+            return Flux.empty();
+        }
+        Map<String, Integer> depths = parents.stream()
+                .filter(parent -> parent.getDepth() < maxDepth)
+                .collect(Collectors.toMap(Comment::getCommentId, Comment::getDepth));
+        if (depths.isEmpty()) {
+            return Flux.empty();
+        }
+        return mongoOps.find(
+                query(where("postId").is(parents.get(0).getPostId())
+                        .and("parentId").in(depths.keySet()))
+                        .with(sort)
+                        .limit(limit),
+                Comment.class)
+                .doOnNext(child -> child.setDepth(depths.get(child.getParentId()) + 1))
+                .collectList()
+                .flatMapMany(children -> Flux.concat(
+                        Flux.fromIterable(children),
+                        findDescendantsByParent(children, maxDepth, sort, limit - children.size())));
+    }
+
+    @Override
+    public Flux<Comment> findChildren(Comment parent, Sort sort, long skip, int limit) {
+        return mongoOps.find(
+                query(where("postId").is(parent.getPostId())
+                        .and("parentId").is(parent.getCommentId()))
+                        .with(sort)
+                        .skip(skip)
+                        .limit(limit),
+                Comment.class);
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countReplies(String postId, Collection<String> parentIds) {
+        if (parentIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return mongoOps.aggregate(
+                newAggregation(
+                        match(where("postId").is(postId).and("parentId").in(parentIds)),
+                        group("parentId").count().as("count")
+                ),
+                "comments",
+                ReplyCount.class)
+                .collectMap(ReplyCount::getParentId, ReplyCount::getCount);
+    }
+
+    @Override
+    public Flux<CommentCount> countByPost(Instant commentedAfter) {
+        return mongoOps.aggregate(
+                newAggregation(
+                        match(where("commented").gte(commentedAfter)),
+                        group("postId")
+                ),
+                "comments",
+                Document.class)
+                .map(it -> it.getString("_id"))
+                .collectList()
+                .flatMapMany(postIds -> postIds.isEmpty() ? Flux.empty() : mongoOps.aggregate(
+                        newAggregation(
+                                match(where("postId").in(postIds)),
+                                group("postId")
+                                        .sum(ConditionalOperators.when(where("deleted").is(true)).then(0).otherwise(1)).as("count")
+                                        .max("commented").as("lastActivity")
+                        ),
+                        "comments",
+                        CommentCount.class));
+    }
+
+    @Override
+    public Flux<Comment> findWithoutPath(int limit) {
+        return mongoOps.find(
+                query(where("path").exists(false))
+                        .with(Sort.by("_id"))
+                        .limit(limit),
+                Comment.class);
+    }
+
+    @Override
+    public Mono<Boolean> updatePath(Comment comment) {
+        return mongoOps
+                .updateFirst(
+                        query(where("_id").is(comment.getCommentId()).and("path").exists(false)),
+                        Update.update("path", comment.getPath()).set("depth", comment.getDepth()),
+                        Comment.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+
+    @Override
+    public Mono<Void> incrementScore(String commentId, long delta) {
+        return mongoOps
+                .updateFirst(query(where("_id").is(commentId)), new Update().inc("score", delta), Comment.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Comment> incrementScoreAndGet(String commentId, long delta) {
+        return mongoOps
+                .findAndModify(
+                        scoreQuery(where("_id").is(commentId)),
+                        new Update().inc("score", delta),
+                        FindAndModifyOptions.options().returnNew(true),
+                        Comment.class);
+    }
+
+    @Override
+    public Flux<Comment> findScores(Collection<String> commentIds) {
+        return mongoOps.find(scoreQuery(where("_id").in(commentIds)), Comment.class);
+    }
+
+    @Override
+    public Mono<Comment> updateContent(Comment comment) {
+        return mongoOps
+                .updateFirst(
+                        query(where("_id").is(comment.getCommentId())),
+                        Update.update("body", comment.getBody())
+                                .set("edited", comment.getEdited())
+                                .set("deleted", comment.isDeleted()),
+                        Comment.class)
+                .thenReturn(comment);
+    }
+
+    private Flux<Comment> findPage(Criteria criteria, CommentRequest request) {
+        return Flux.defer(() -> mongoOps.find(pageQuery(criteria, request), Comment.class));
+    }
+
+    private static Query pageQuery(Criteria criteria, CommentRequest request) {
+        return request.toAfter()
+                .map(after -> query(new Criteria().andOperator(criteria, seek(request.toSort(), after)))
+                        .with(request.toSort())
+                        .limit(request.toSize()))
+                .orElseGet(() -> query(criteria).with(request.toPageable()));
+    }
+
+    private static Query scoreQuery(Criteria criteria) {
+        Query query = query(criteria);
+        query.fields().include("postId", "score");
+        return query;
+    }
+
+    private static Criteria seek(Sort sort, CommentCursor after) {
+        Sort.Order order = sort.iterator().next();
+        Object commentId = ObjectId.isValid(after.getCommentId()) ? new ObjectId(after.getCommentId()) : after.getCommentId();
+        if (order.getProperty().equals(CommentRequest.ID)) {
+            return beyond(where(CommentRequest.ID), order, commentId);
+        }
+        return new Criteria().orOperator(
+                beyond(where(order.getProperty()), order, after.getKey()),
+                beyond(where(order.getProperty()).is(after.getKey()).and(CommentRequest.ID), order, commentId)
+        );
+    }
+
+    private static Criteria beyond(Criteria criteria, Sort.Order order, Object value) {
+        return order.isAscending() ? criteria.gt(value) : criteria.lt(value);
+    }
+
+    private static Pattern prefixPattern(String path) {
+        return Pattern.compile("^" + path.replaceAll("[\\W&&[^/]]", "\\\\$0"));
+    }
+}
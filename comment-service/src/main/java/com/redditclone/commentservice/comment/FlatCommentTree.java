@@ -0,0 +1,76 @@
+package com.redditclone.commentservice.comment;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The comment trees of a post page as a flat array in pre-order, for clients that would rather not encode and
+ * decode deeply nested objects. Each node holds the index of its parent, or -1 for the roots of the page, and its
+ * depth below them. Nodes are encoded as arrays in the order of {@link Node}'s properties, not as objects.
+ */
+@Value
+public class FlatCommentTree {
+
+    String postId;
+    List<Node> nodes;
+
+    public static FlatCommentTree of(String postId, List<CommentTree> trees) {
+        List<Node> nodes = new ArrayList<>();
+        Deque<Visit> visits = new ArrayDeque<>();
+        for (int i = trees.size() - 1; i >= 0; i--) {
+            visits.push(new Visit(trees.get(i), -1, 0));
+        }
+        while (!visits.isEmpty()) {
+            Visit visit = visits.pop();
+            int index = nodes.size();
+            nodes.add(Node.of(visit.tree, visit.parent, visit.depth));
+            List<CommentTree> children = visit.tree.getChildren();
+            if (children != null) {
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    visits.push(new Visit(children.get(i), index, visit.depth + 1));
+                }
+            }
+        }
+        return new FlatCommentTree(postId, nodes);
+    }
+
+    @Value
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"parent", "depth", "commentId", "author", "body", "score", "commented", "edited",
+            "deleted", "continuation", "cursor"})
+    public static class Node {
+
+        int parent;
+        int depth;
+        String commentId;
+        String author;
+        String body;
+        long score;
+        Instant commented;
+        Instant edited;
+        boolean deleted;
+        String continuation;
+        String cursor;
+
+        static Node of(CommentTree tree, int parent, int depth) {
+            return new Node(parent, depth, tree.getCommentId(), tree.getAuthor(), tree.getBody(), tree.getScore(),
+                    tree.getCommented(), tree.getEdited(), tree.isDeleted(), tree.getContinuation(), tree.getCursor());
+        }
+    }
+
+    @Value
+    private static class Visit {
+
+        CommentTree tree;
+        int parent;
+        int depth;
+
+    }
+}
@@ -0,0 +1,10 @@
+package com.redditclone.commentservice.comment;
+
+public class InvalidContinuationException extends RuntimeException {
+
+    public static final String INVALID_CONTINUATION = "Invalid comment continuation %s";
+
+    public InvalidContinuationException(String continuation, Throwable cause) {
+        super(String.format(INVALID_CONTINUATION, continuation), cause);
+    }
+}
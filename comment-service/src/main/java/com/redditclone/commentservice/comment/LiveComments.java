@@ -0,0 +1,159 @@
+package com.redditclone.commentservice.comment;
+
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes comment changes to the live subscribers of a post. A single tail over all comment changes is shared by
+ * every subscriber and demultiplexed per post. It is started with the first subscriber and stopped after the
+ * last. The tail reads a MongoDB change stream, so writes through any instance are seen, or with
+ * {@code comments.live.source=local} only the writes of this instance, where there is no replica set.
+ * Each subscriber buffers up to {@code buffer-size} changes and fails once it falls further behind.
+ */
+@Slf4j
+@Component
+public class LiveComments {
+
+    private final ReactiveMongoOperations mongoOps;
+    private final CommentRepository commentRepo;
+    private final CommentChanges commentChanges;
+    private final Map<String, PostChannel> posts = new ConcurrentHashMap<>();
+    private Disposable tail;
+    private volatile BsonValue resumeToken;
+
+    @Value("${comments.live.source:change-stream}")
+    private String source;
+
+    @Value("${comments.live.buffer-size:256}")
+    private int bufferSize;
+
+    public LiveComments(ReactiveMongoOperations mongoOps,
+                        CommentRepository commentRepo,
+                        CommentChanges commentChanges) {
+        this.mongoOps = mongoOps;
+        this.commentRepo = commentRepo;
+        this.commentChanges = commentChanges;
+    }
+
+    public Flux<CommentDelta> streamPost(String postId) {
+        return Flux.using(
+                () -> join(postId),
+                channel -> channel.sink.asFlux().onBackpressureBuffer(bufferSize),
+                channel -> leave(postId, channel));
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (tail != null) {
+            tail.dispose();
+            tail = null;
+        }
+    }
+
+    private synchronized PostChannel join(String postId) {
+        PostChannel channel = posts.computeIfAbsent(postId, id -> new PostChannel());
+        channel.subscribers++;
+        if (tail == null) {
+            resumeToken = null;
+            tail = tail().subscribe(this::route);
+        }
+        return channel;
+    }
+
+    private synchronized void leave(String postId, PostChannel channel) {
+        if (--channel.subscribers == 0) {
+            posts.remove(postId);
+        }
+        if (posts.isEmpty()) {
+            stop();
+        }
+    }
+
+    private void route(CommentDelta delta) {
+        PostChannel channel = posts.get(delta.getComment().getPostId());
+        if (channel != null) {
+            channel.sink.emitNext(delta, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        }
+    }
+
+    private Flux<CommentDelta> tail() {
+        Flux<CommentDelta> deltas = "local".equals(source) ? localDeltas() : changeStreamDeltas();
+        return deltas
+                .doOnError(ex -> log.warn("Tailing comment changes failed, resuming", ex))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(Duration.ofSeconds(10)));
+    }
+
+    private Flux<CommentDelta> localDeltas() {
+        return commentChanges.stream()
+                .concatMap(change -> commentRepo
+                        .findById(change.getCommentId())
+                        .map(comment -> new CommentDelta(change.getType(), comment)));
+    }
+
+    private Flux<CommentDelta> changeStreamDeltas() {
+        return Flux
+                .defer(() -> mongoOps
+                        .changeStream(Comment.class)
+                        .withOptions(options -> {
+                            options.returnFullDocumentOnUpdate();
+                            if (resumeToken != null) {
+                                options.resumeAfter(resumeToken);
+                            }
+                        })
+                        .listen())
+                .doOnNext(event -> resumeToken = event.getResumeToken())
+                .handle((event, sink) -> {
+                    CommentChange.Type type = typeOf(event);
+                    if (type != null) {
+                        sink.next(new CommentDelta(type, event.getBody()));
+                    }
+                });
+    }
+
+    private static CommentChange.Type typeOf(ChangeStreamEvent<Comment> event) {
+        Comment comment = event.getBody();
+        OperationType operation = event.getOperationType();
+        if (comment == null || operation == null) {
+            return null;
+        }
+        switch (operation) {
+            case INSERT:
+                return CommentChange.Type.CREATED;
+            case REPLACE:
+                return CommentChange.Type.UPDATED;
+            case UPDATE:
+                Set<String> fields = event.getRaw().getUpdateDescription().getUpdatedFields().keySet();
+                if (fields.contains("deleted") && comment.isDeleted()) {
+                    return CommentChange.Type.DELETED;
+                }
+                if (fields.contains("body") || fields.contains("edited")) {
+                    return CommentChange.Type.UPDATED;
+                }
+                // other fields, like the path written by the backfill, are not shown to readers
+                return fields.contains("score") ? CommentChange.Type.SCORED : null;
+            default:
+                return null;
+        }
+    }
+
+    private static class PostChannel {
+
+        private final Sinks.Many<CommentDelta> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+    }
+}
@@ -0,0 +1,12 @@
+package com.redditclone.commentservice.comment;
+
+import lombok.Value;
+import org.springframework.data.annotation.Id;
+
+@Value
+public class ReplyCount {
+
+    @Id
+    String parentId;
+    long count;
+}
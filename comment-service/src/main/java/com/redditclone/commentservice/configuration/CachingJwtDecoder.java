@@ -0,0 +1,85 @@
+package com.redditclone.commentservice.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Remembers tokens the delegate already verified, so the few gateway tokens sent with every request are not
+ * parsed and signature checked each time. Entries are keyed by a hash of the token and expire at the token's
+ * own {@code exp}, tokens without one are never cached.
+ */
+public class CachingJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+
+    public CachingJwtDecoder(ReactiveJwtDecoder delegate, long maximumSize) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilTokenExpires())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        return Mono.defer(() -> {
+            String key = hash(token);
+            Jwt cached = cache.getIfPresent(key);
+            if (cached != null && cached.getTokenValue().equals(token)) {
+                return Mono.just(cached);
+            }
+            return delegate.decode(token)
+                    .doOnNext(jwt -> {
+                        if (jwt.getExpiresAt() != null) {
+                            cache.put(key, jwt);
+                        }
+                    });
+        });
+    }
+
+    public JwtCacheStats stats() {
+        CacheStats stats = cache.stats();
+        return new JwtCacheStats(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static class UntilTokenExpires implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.redditclone.commentservice.configuration;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Signing keys of the issuer, resolved without blocking startup. Keys are first read from a local JWK set file
+ * when there is one, and the issuer's discovery document and key set are only fetched on a token with an
+ * unknown {@code kid} or, in the background, once the keys are older than the refresh interval. Fetched keys
+ * are written back to the file, so the next start does not need the issuer either.
+ */
+@Slf4j
+public class JwkSetSource implements Function<SignedJWT, Flux<JWK>> {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> DISCOVERY_DOCUMENT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final WebClient webClient;
+    private final Path jwkSetFile;
+    private final Duration refreshInterval;
+    private final Duration minRefreshInterval;
+    private final Mono<String> jwkSetUri;
+    private final AtomicReference<Mono<JWKSet>> refreshing = new AtomicReference<>();
+    private volatile JWKSet keys = new JWKSet();
+    private volatile Instant fetchedAt = Instant.EPOCH;
+
+    public JwkSetSource(WebClient webClient, String issuerLocation, Path jwkSetFile,
+                        Duration refreshInterval, Duration minRefreshInterval) {
+        this.webClient = webClient;
+        this.jwkSetFile = jwkSetFile;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshInterval = minRefreshInterval;
+        this.jwkSetUri = webClient.get()
+                .uri(issuerLocation + "/.well-known/openid-configuration")
+                .retrieve()
+                .bodyToMono(DISCOVERY_DOCUMENT)
+                .map(document -> (String) document.get("jwks_uri"))
+                // keep the uri once discovered, but try again after a failure
+                .cache(uri -> Duration.ofMillis(Long.MAX_VALUE), ex -> Duration.ZERO, () -> Duration.ZERO);
+        if (jwkSetFile != null && Files.isReadable(jwkSetFile)) {
+            try {
+                keys = JWKSet.load(jwkSetFile.toFile());
+            } catch (IOException | ParseException ex) {
+                log.warn("Could not read the JWK set from {}, fetching it from the issuer", jwkSetFile, ex);
+            }
+        }
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+        List<JWK> matches = selector.select(keys);
+        Instant now = Instant.now();
+        if (!matches.isEmpty()) {
+            if (now.isAfter(fetchedAt.plus(refreshInterval))) {
+                refresh().subscribe(fetched -> {
+                }, ex -> log.warn("Background refresh of the JWK set failed", ex));
+            }
+            return Flux.fromIterable(matches);
+        }
+        // an unknown kid means the issuer rotated its keys, unless it was just fetched
+        if (now.isBefore(fetchedAt.plus(minRefreshInterval))) {
+            return Flux.empty();
+        }
+        return refresh().flatMapIterable(selector::select);
+    }
+
+    private Mono<JWKSet> refresh() {
+        Mono<JWKSet> current = refreshing.get();
+        if (current != null) {
+            return current;
+        }
+        Mono<JWKSet> refresh = jwkSetUri
+                .flatMap(uri -> webClient.get().uri(uri).retrieve().bodyToMono(String.class))
+                .map(JwkSetSource::parse)
+                .doOnNext(fetched -> {
+                    keys = fetched;
+                    fetchedAt = Instant.now();
+                })
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(this::save)
+                .doFinally(signal -> refreshing.set(null))
+                .cache();
+        return refreshing.compareAndSet(null, refresh) ? refresh : refresh();
+    }
+
+    private void save(JWKSet fetched) {
+        if (jwkSetFile == null) {
+            return;
+        }
+        try {
+            Files.writeString(jwkSetFile, fetched.toString());
+        } catch (IOException ex) {
+            log.warn("Could not write the JWK set to {}", jwkSetFile, ex);
+        }
+    }
+
+    private static JWKSet parse(String jwkSet) {
+        try {
+            return JWKSet.parse(jwkSet);
+        } catch (ParseException ex) {
+            throw new IllegalStateException("Invalid JWK set", ex);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.redditclone.commentservice.configuration;
+
+import lombok.Value;
+
+@Value
+public class JwtCacheStats {
+
+    long size;
+    long hits;
+    long misses;
+    long evictions;
+
+}
@@ -4,5 +4,5 @@ import reactor.core.publisher.Mono;
 
 public interface CustomVoteRepository {
 
-    Mono<Score> calculateScoreByCommentId(String commentId);
+    Mono<Vote> toggleVote(String commentId, String username, VoteType voteType);
 }
@@ -1,42 +1,42 @@
 package com.redditclone.commentservice.vote;
 
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoOperations;
-import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators.Subtract;
-import org.springframework.data.mongodb.core.aggregation.ComparisonOperators.Eq;
-import org.springframework.data.mongodb.core.aggregation.ConditionalOperators.Cond;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
 import reactor.core.publisher.Mono;
 
-import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 @RequiredArgsConstructor
 public class CustomVoteRepositoryImpl implements CustomVoteRepository {
 
     private final ReactiveMongoOperations mongoOps;
 
+    /**
+     * Casts, flips or retracts the vote in a single upsert and emits the vote as it was before,
+     * if any. A retracted vote is kept with a null vote type.
+     */
     @Override
-    public Mono<Score> calculateScoreByCommentId(String commentId) {
-        return mongoOps.aggregate(
-                newAggregation(
-                        match(where("commentId").is(commentId)),
-                        group()
-                                .sum(countVotesOfType(VoteType.UPVOTE)).as("upvotes")
-                                .sum(countVotesOfType(VoteType.DOWNVOTE)).as("downvotes"),
-                        project()
-                                .and(Subtract.valueOf("upvotes").subtract("downvotes"))
-                                .as("score")
-                ),
-                "comment_votes",
-                Score.class)
-                .next()
-                .defaultIfEmpty(Score.withScoreZero());
+    public Mono<Vote> toggleVote(String commentId, String username, VoteType voteType) {
+        return mongoOps.findAndModify(
+                query(where("commentId").is(commentId).and("username").is(username)),
+                AggregationUpdate.from(List.of(toggle(voteType))),
+                FindAndModifyOptions.options().upsert(true).returnNew(false),
+                Vote.class);
     }
 
-    private Cond countVotesOfType(VoteType voteType) {
-        return Cond
-                .when(Eq.valueOf("voteType").equalToValue(voteType))
-                .then(1)
-                .otherwise(0);
+    private static AggregationOperation toggle(VoteType voteType) {
+        Document cond = new Document("$cond", Arrays.asList(
+                new Document("$eq", Arrays.asList("$voteType", voteType.name())),
+                null,
+                voteType.name()));
+        return context -> new Document("$set", new Document("voteType", cond));
     }
 }
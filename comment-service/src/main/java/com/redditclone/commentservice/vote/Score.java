@@ -1,13 +0,0 @@
-package com.redditclone.commentservice.vote;
-
-import lombok.Value;
-
-@Value
-public class Score {
-
-    long score;
-
-    public static Score withScoreZero() {
-        return new Score(0L);
-    }
-}
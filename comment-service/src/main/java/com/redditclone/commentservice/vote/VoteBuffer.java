@@ -0,0 +1,294 @@
+package com.redditclone.commentservice.vote;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.redditclone.commentservice.comment.CommentChange;
+import com.redditclone.commentservice.comment.CommentChanges;
+import com.redditclone.commentservice.comment.CommentTreeCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Write-behind ingestion of comment votes. Votes are buffered per comment and flushed on a timer or once
+ * {@code flush-size} votes are buffered. A flush resolves the final vote of every user, writes the votes with
+ * one bulkWrite and applies the merged score delta of every comment with another. While the buffer holds
+ * {@code capacity} votes, voting flushes and tries again after a backoff of {@code full-backoff} that doubles up to
+ * the flush interval, and fails after {@code full-retries} tries.
+ * <p>
+ * A flush that fails is not dropped. When the stored votes cannot be read, the batch goes back into the buffer.
+ * When the resolved writes fail, they are kept and applied first on the next flush, before any newer vote is
+ * resolved against the stored votes: vote upserts are idempotent and are sent again, score deltas are sent again
+ * only for the comments whose write is known to have failed. A score write that fails without saying which
+ * comments it reached is logged and dropped rather than risk applying a delta twice.
+ * <p>
+ * The post and comment services each keep a copy of this class. They share no module, and the copies differ in
+ * the collection they write and in what they refresh once scores change.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "comments.vote-buffer.enabled", havingValue = "true")
+public class VoteBuffer {
+
+    private final ReactiveMongoOperations mongoOps;
+    private final CommentChanges commentChanges;
+    private final CommentTreeCache commentTreeCache;
+
+    private final Scheduler flusher = Schedulers.fromExecutorService(
+            Executors.newSingleThreadScheduledExecutor(), "comment-vote-flush");
+
+    @Value("${comments.vote-buffer.capacity:10000}")
+    private int capacity;
+
+    @Value("${comments.vote-buffer.flush-size:1000}")
+    private int flushSize;
+
+    @Value("${comments.vote-buffer.flush-interval:1s}")
+    private Duration flushInterval;
+
+    @Value("${comments.vote-buffer.full-retries:10}")
+    private int fullRetries;
+
+    @Value("${comments.vote-buffer.full-backoff:50ms}")
+    private Duration fullBackoff;
+
+    private Map<String, Map<String, List<VoteType>>> pending = new HashMap<>();
+    private int size;
+    private Writes unapplied = Writes.NONE;
+
+    @PostConstruct
+    public void start() {
+        long interval = flushInterval.toMillis();
+        flusher.schedulePeriodically(this::flushPending, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush().block();
+        flusher.dispose();
+    }
+
+    public Mono<Void> add(String commentId, String username, VoteType voteType) {
+        return Mono.defer(() -> {
+                    int buffered = offer(commentId, username, voteType);
+                    if (buffered < 0) {
+                        return flush().then(Mono.<Void>error(new BufferFullException()));
+                    }
+                    if (buffered >= flushSize) {
+                        flush().subscribe();
+                    }
+                    return Mono.<Void>empty();
+                })
+                // a flush that cannot write leaves the buffer full, so offering again at once would spin
+                .retryWhen(Retry.backoff(fullRetries, fullBackoff)
+                                .maxBackoff(flushInterval)
+                                .filter(BufferFullException.class::isInstance)
+                                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    public Mono<Void> flush() {
+        return Mono.<Void>fromRunnable(this::flushPending).subscribeOn(flusher);
+    }
+
+    private synchronized int offer(String commentId, String username, VoteType voteType) {
+        if (size >= capacity) {
+            return -1;
+        }
+        pending.computeIfAbsent(commentId, id -> new HashMap<>())
+                .computeIfAbsent(username, user -> new ArrayList<>())
+                .add(voteType);
+        return ++size;
+    }
+
+    private synchronized Map<String, Map<String, List<VoteType>>> drain() {
+        Map<String, Map<String, List<VoteType>>> drained = pending;
+        pending = new HashMap<>();
+        size = 0;
+        return drained;
+    }
+
+    private void flushPending() {
+        if (!unapplied.isEmpty() && !apply(unapplied)) {
+            return;
+        }
+        Map<String, Map<String, List<VoteType>>> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+        Writes writes;
+        try {
+            writes = resolve(batch).block();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to read the stored votes of {} comments, buffering their votes again", batch.size(), ex);
+            requeue(batch);
+            return;
+        }
+        apply(writes);
+    }
+
+    private synchronized void requeue(Map<String, Map<String, List<VoteType>>> batch) {
+        batch.forEach((commentId, byUser) -> byUser.forEach((username, voteTypes) -> {
+            List<VoteType> buffered = pending
+                    .computeIfAbsent(commentId, id -> new HashMap<>())
+                    .computeIfAbsent(username, user -> new ArrayList<>());
+            buffered.addAll(0, voteTypes);
+            size += voteTypes.size();
+        }));
+    }
+
+    private Mono<Writes> resolve(Map<String, Map<String, List<VoteType>>> batch) {
+        Set<String> usernames = batch.values().stream()
+                .flatMap(byUser -> byUser.keySet().stream())
+                .collect(Collectors.toSet());
+        return mongoOps
+                .find(query(where("commentId").in(batch.keySet()).and("username").in(usernames)), Vote.class)
+                .collect(HashMap<String, Map<String, VoteType>>::new, (votes, vote) -> votes
+                        .computeIfAbsent(vote.getCommentId(), id -> new HashMap<>())
+                        .put(vote.getUsername(), vote.getVoteType()))
+                .map(previous -> {
+                    List<WriteModel<Document>> votes = new ArrayList<>();
+                    Map<String, Long> deltas = new LinkedHashMap<>();
+                    batch.forEach((commentId, byUser) -> {
+                        Map<String, VoteType> before = previous.getOrDefault(commentId, Map.of());
+                        long delta = 0;
+                        for (Map.Entry<String, List<VoteType>> entry : byUser.entrySet()) {
+                            VoteType from = before.get(entry.getKey());
+                            VoteType to = from;
+                            for (VoteType voteType : entry.getValue()) {
+                                to = to == voteType ? null : voteType;
+                            }
+                            if (to != from) {
+                                votes.add(upsertVote(commentId, entry.getKey(), to));
+                                delta += score(to) - score(from);
+                            }
+                        }
+                        if (delta != 0) {
+                            deltas.put(commentId, delta);
+                        }
+                    });
+                    return new Writes(votes, deltas);
+                });
+    }
+
+    /**
+     * Applies the writes of a flush, keeping what failed for the next one. Returns false when writes were kept.
+     */
+    private boolean apply(Writes writes) {
+        unapplied = Writes.NONE;
+        try {
+            bulkWrite(mongoOps.getCollectionName(Vote.class), writes.votes).block();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to write {} buffered votes, retrying on the next flush", writes.votes.size(), ex);
+            unapplied = writes;
+            return false;
+        }
+        List<String> scored = new ArrayList<>(writes.deltas.keySet());
+        List<WriteModel<Document>> scores = new ArrayList<>();
+        writes.deltas.forEach((commentId, delta) -> scores.add(
+                new UpdateOneModel<>(Filters.eq("_id", toId(commentId)), Updates.inc("score", delta))));
+        try {
+            bulkWrite("comments", scores).block();
+        } catch (MongoBulkWriteException ex) {
+            Map<String, Long> failed = new LinkedHashMap<>();
+            for (BulkWriteError error : ex.getWriteErrors()) {
+                String commentId = scored.get(error.getIndex());
+                failed.put(commentId, writes.deltas.get(commentId));
+            }
+            log.warn("Failed to write the score of {} comments, retrying on the next flush", failed.size(), ex);
+            unapplied = new Writes(List.of(), failed);
+            scored.removeAll(failed.keySet());
+        } catch (RuntimeException ex) {
+            log.error("Failed to write the scores of {} comments, their buffered votes are not counted", scored.size(), ex);
+            return true;
+        }
+        try {
+            commentTreeCache.refreshScores(scored)
+                    .then(Mono.fromRunnable(() -> scored.forEach(id -> commentChanges.publish(CommentChange.scored(id)))))
+                    .block();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to publish the scores of {} comments", scored.size(), ex);
+        }
+        return unapplied.isEmpty();
+    }
+
+    private Mono<Void> bulkWrite(String collectionName, List<WriteModel<Document>> writes) {
+        if (writes.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoOps
+                .getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .then();
+    }
+
+    private static WriteModel<Document> upsertVote(String commentId, String username, VoteType voteType) {
+        return new UpdateOneModel<>(
+                Filters.and(Filters.eq("commentId", commentId), Filters.eq("username", username)),
+                Updates.set("voteType", voteType == null ? null : voteType.name()),
+                new UpdateOptions().upsert(true));
+    }
+
+    private static long score(VoteType voteType) {
+        return voteType == null ? 0L : voteType.getScore();
+    }
+
+    private static Object toId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    private static class BufferFullException extends RuntimeException {
+
+        BufferFullException() {
+            super("Vote buffer is full");
+        }
+    }
+
+    private static class Writes {
+
+        static final Writes NONE = new Writes(List.of(), Map.of());
+
+        final List<WriteModel<Document>> votes;
+        final Map<String, Long> deltas;
+
+        Writes(List<WriteModel<Document>> votes, Map<String, Long> deltas) {
+            this.votes = votes;
+            this.deltas = deltas;
+        }
+
+        boolean isEmpty() {
+            return votes.isEmpty() && deltas.isEmpty();
+        }
+    }
+}
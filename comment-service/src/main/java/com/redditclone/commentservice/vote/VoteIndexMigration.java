@@ -0,0 +1,91 @@
+package com.redditclone.commentservice.vote;
+
+import com.redditclone.commentservice.comment.CommentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Creates the unique index on the comment and user of the votes. Votes cast concurrently before the index existed
+ * may have been stored twice, and every copy counted towards the comment score, so all but the latest vote of a user
+ * are removed, and their score taken off the comment, before the index is created. It runs on every start and fails
+ * the start if the index still cannot be created, rather than take votes without it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VoteIndexMigration implements ApplicationRunner {
+
+    static final Index COMMENT_USER = new Index()
+            .on("commentId", Sort.Direction.ASC)
+            .on("username", Sort.Direction.ASC)
+            .unique()
+            .named("comment_user");
+
+    private final ReactiveMongoOperations mongoOps;
+    private final CommentRepository commentRepo;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long removed = migrate().block();
+        if (removed > 0) {
+            log.warn("Removed {} duplicate votes before creating the unique vote index", removed);
+        }
+    }
+
+    public Mono<Long> migrate() {
+        return removeDuplicates()
+                .flatMap(removed -> mongoOps.indexOps(Vote.class).ensureIndex(COMMENT_USER).thenReturn(removed));
+    }
+
+    private Mono<Long> removeDuplicates() {
+        Aggregation duplicates = Aggregation
+                .newAggregation(
+                        sort(Sort.Direction.ASC, "_id"),
+                        group("commentId", "username")
+                                .push(Aggregation.ROOT).as("votes")
+                                .count().as("count"),
+                        match(where("count").gt(1)))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        return mongoOps
+                .aggregate(duplicates, mongoOps.getCollectionName(Vote.class), Document.class)
+                .concatMap(this::removeDuplicates)
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Keeps the latest vote of a user and takes the score of the others off the comment.
+     */
+    private Mono<Long> removeDuplicates(Document duplicate) {
+        String commentId = duplicate.get("_id", Document.class).getString("commentId");
+        List<Document> votes = duplicate.getList("votes", Document.class);
+        List<Document> removed = votes.subList(0, votes.size() - 1);
+        long delta = -removed.stream()
+                .map(vote -> vote.getString("voteType"))
+                .mapToLong(voteType -> voteType == null ? 0L : VoteType.valueOf(voteType).getScore())
+                .sum();
+        List<Object> removedIds = removed.stream().map(vote -> vote.get("_id")).collect(Collectors.toList());
+        return mongoOps
+                .remove(query(where("_id").in(removedIds)), Vote.class)
+                .then(delta == 0 ? Mono.empty() : commentRepo.incrementScore(commentId, delta))
+                .thenReturn((long) removed.size());
+    }
+}
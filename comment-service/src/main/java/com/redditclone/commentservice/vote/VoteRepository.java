@@ -1,9 +1,11 @@
 package com.redditclone.commentservice.vote;
 
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Mono;
 
 public interface VoteRepository extends ReactiveMongoRepository<Vote, String>, CustomVoteRepository {
 
-    Mono<Vote> findVoteByCommentIdAndUsername(String postId, String username);
+    @Query("{ 'commentId': ?0, 'username': ?1, 'voteType': { $ne: null } }")
+    Mono<Vote> findVoteByCommentIdAndUsername(String commentId, String username);
 }
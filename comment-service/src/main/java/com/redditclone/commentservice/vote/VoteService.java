@@ -1,8 +1,10 @@
 package com.redditclone.commentservice.vote;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 @Service
 @RequiredArgsConstructor
@@ -10,22 +12,21 @@ public class VoteService {
 
     private final VoteRepository voteRepo;
 
-    public Mono<Vote> voteComment(String commentId, VoteType voteType, String username) {
+    /**
+     * Records the vote and emits the resulting change of the comment score.
+     */
+    public Mono<Long> voteComment(String commentId, VoteType voteType, String username) {
         return voteRepo
-                .findVoteByCommentIdAndUsername(commentId, username)
-                .flatMap(vote -> overrideVoteIfOppositeTypeOrDeleteIfSameType(vote, voteType))
-                .switchIfEmpty(Mono.defer(() -> voteRepo.insert(Vote.of(commentId, username, voteType))));
+                .toggleVote(commentId, username, voteType)
+                .map(previous -> scoreDelta(previous.getVoteType(), voteType))
+                .defaultIfEmpty(voteType.getScore())
+                .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance));
     }
 
-    public Mono<Score> calculateScoreByCommentId(String commentId) {
-        return voteRepo.calculateScoreByCommentId(commentId);
-    }
-
-    private Mono<Vote> overrideVoteIfOppositeTypeOrDeleteIfSameType(Vote vote, VoteType voteType) {
-        return Mono.just(vote)
-                .filter(it -> it.getVoteType().equals(voteType.opposite()))
-                .doOnNext(it -> it.setVoteType(voteType))
-                .flatMap(voteRepo::save)
-                .switchIfEmpty(Mono.defer(() -> voteRepo.delete(vote).thenReturn(vote)));
+    private long scoreDelta(VoteType previous, VoteType voteType) {
+        if (previous == null) {
+            return voteType.getScore();
+        }
+        return previous == voteType ? -voteType.getScore() : 2 * voteType.getScore();
     }
 }
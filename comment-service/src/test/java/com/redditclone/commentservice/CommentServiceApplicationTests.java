@@ -1,10 +1,20 @@
 package com.redditclone.commentservice;
 
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
 import com.redditclone.commentservice.comment.*;
 import com.redditclone.commentservice.vote.Vote;
+import com.redditclone.commentservice.vote.VoteBuffer;
+import com.redditclone.commentservice.vote.VoteIndexMigration;
 import com.redditclone.commentservice.vote.VoteRepository;
 import com.redditclone.commentservice.vote.VoteType;
 import io.rsocket.metadata.WellKnownMimeType;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,6 +24,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveChangeStreamOperation;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.MediaType;
 import org.springframework.messaging.rsocket.RSocketRequester;
 import org.springframework.security.oauth2.client.endpoint.OAuth2PasswordGrantRequest;
@@ -23,16 +39,37 @@ import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
 import org.springframework.security.rsocket.metadata.BearerTokenAuthenticationEncoder;
 import org.springframework.security.rsocket.metadata.BearerTokenMetadata;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 public class CommentServiceApplicationTests {
@@ -49,6 +86,18 @@ public class CommentServiceApplicationTests {
     @Autowired
     private VoteRepository voteRepo;
 
+    @Autowired
+    private ReactiveMongoOperations mongoOps;
+
+    @Autowired
+    private CommentChanges commentChanges;
+
+    @Autowired
+    private CommentTreeCache commentTreeCache;
+
+    @Autowired
+    private VoteIndexMigration voteIndexMigration;
+
     @Autowired
     private OAuth2 oAuth2;
 
@@ -56,6 +105,7 @@ public class CommentServiceApplicationTests {
     public void setup() {
         commentRepo.deleteAll().block();
         voteRepo.deleteAll().block();
+        commentTreeCache.invalidateAll();
     }
 
     private RSocketRequester tcp() {
@@ -69,10 +119,10 @@ public class CommentServiceApplicationTests {
     public void findCommentsByPostId_shouldReturnCommentTree() {
 
         Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
-        Comment child1 = commentRepo.save(Comment.of("post1", root.getCommentId(), "user2", "body2")).block();
-        Comment child2 = commentRepo.save(Comment.of("post1", root.getCommentId(), "user3", "body3")).block();
-        Comment child3 = commentRepo.save(Comment.of("post1", child1.getCommentId(), "user4", "body4")).block();
-        Comment child4 = commentRepo.save(Comment.of("post1", child2.getCommentId(), "user5", "body5")).block();
+        Comment child1 = commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        Comment child2 = commentRepo.save(Comment.replyTo(root, "user3", "body3")).block();
+        Comment child3 = commentRepo.save(Comment.replyTo(child1, "user4", "body4")).block();
+        Comment child4 = commentRepo.save(Comment.replyTo(child2, "user5", "body5")).block();
         Comment root2 = commentRepo.save(Comment.of("post1", null, "user6", "body6")).block();
         Comment root3 = commentRepo.save(Comment.of("post2", null, "user7", "body7")).block();
 
@@ -97,6 +147,336 @@ public class CommentServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void countByPost_shouldCountTheCommentsOfRecentlyCommentedPostsThatAreNotDeleted() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
+        commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        Comment deleted = commentRepo.save(Comment.of("post1", null, "user3", "body3").delete()).block();
+        Comment latest = commentRepo.save(Comment.of("post2", null, "user4", "body4")).block();
+
+        StepVerifier
+                .create(commentRepo.countByPost(Instant.now().minusSeconds(60)).collectList())
+                .assertNext(it -> assertThat(it)
+                        .extracting(CommentCount::getPostId, CommentCount::getCount, CommentCount::getLastActivity)
+                        .containsExactlyInAnyOrder(
+                                tuple("post1", 2L, deleted.getCommented()),
+                                tuple("post2", 1L, latest.getCommented())))
+                .verifyComplete();
+
+        StepVerifier
+                .create(commentRepo.countByPost(Instant.now().plusSeconds(60)))
+                .verifyComplete();
+    }
+
+    @Test
+    public void commentActivity_whenReconciling_shouldTakeTheActivityNotSentYetOffTheCounts() {
+
+        CommentActivityPublisher publisher = commentActivityPublisher(mock(RSocketRequester.class));
+        Instant commented = Instant.now();
+        publisher.created(Comment.of("post1", null, "user1", "body1"));
+        publisher.created(Comment.of("post1", null, "user2", "body2"));
+        publisher.deleted(Comment.of("post2", null, "user3", "body3"));
+
+        List<CommentCount> counts = ReflectionTestUtils.invokeMethod(publisher, "withoutPending", List.of(
+                new CommentCount("post1", 5, commented),
+                new CommentCount("post2", 3, commented),
+                new CommentCount("post3", 1, commented)));
+
+        assertThat(counts)
+                .extracting(CommentCount::getPostId, CommentCount::getCount)
+                .containsExactly(tuple("post1", 3L), tuple("post2", 4L), tuple("post3", 1L));
+    }
+
+    @Test
+    public void commentActivity_whenSendingTheBatchFails_shouldNotSendItAgain() {
+
+        AtomicInteger attempts = new AtomicInteger();
+        RSocketRequester postService = mock(RSocketRequester.class, RETURNS_DEEP_STUBS);
+        when(postService.route("apply.comment-activity").metadata(any(), any()).data(any()).retrieveMono(Void.class))
+                .thenReturn(Mono.defer(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.error(new IllegalStateException("timed out"));
+                }));
+        CommentActivityPublisher publisher = commentActivityPublisher(postService);
+        publisher.created(Comment.of("post1", null, "user1", "body1"));
+
+        publisher.flush().block();
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    private static CommentActivityPublisher commentActivityPublisher(RSocketRequester postService) {
+        RSocketRequester.Builder requesterBuilder = mock(RSocketRequester.Builder.class);
+        when(requesterBuilder.dataMimeType(any())).thenReturn(requesterBuilder);
+        when(requesterBuilder.tcp("localhost", 7001)).thenReturn(postService);
+        CommentActivityPublisher publisher = new CommentActivityPublisher(
+                mock(CommentRepository.class), requesterBuilder, "localhost", 7001, "test-secret");
+        ReflectionTestUtils.setField(publisher, "service", "comment-service");
+        ReflectionTestUtils.setField(publisher, "flushSize", 10);
+        return publisher;
+    }
+
+    @Test
+    public void findFlatCommentsByPostId_shouldReturnTheTreesInPreOrderWithParentIndexes() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
+        Comment child1 = commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        Comment child2 = commentRepo.save(Comment.replyTo(child1, "user3", "body3")).block();
+        Comment root2 = commentRepo.save(Comment.of("post1", null, "user4", "body4")).block();
+
+        Mono<FlatCommentTree> comments = tcp().route("find.comments.post.{postId}.flat", "post1")
+                        .data(CommentRequest.builder().build())
+                        .retrieveMono(FlatCommentTree.class);
+
+        StepVerifier
+                .create(comments)
+                .assertNext(it -> {
+                    assertThat(it.getPostId()).isEqualTo("post1");
+                    assertThat(it.getNodes())
+                            .extracting(FlatCommentTree.Node::getCommentId)
+                            .containsExactly(root.getCommentId(), child1.getCommentId(), child2.getCommentId(), root2.getCommentId());
+                    assertThat(it.getNodes()).extracting(FlatCommentTree.Node::getParent).containsExactly(-1, 0, 1, -1);
+                    assertThat(it.getNodes()).extracting(FlatCommentTree.Node::getDepth).containsExactly(0, 1, 2, 0);
+                    assertThat(it.getNodes().get(3).getCursor()).isNotNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void findCommentsByPostId_shouldServeCachedTreesPatchedByWritesOfTheirComments() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "reddit-user", "body1")).block();
+        commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+        CommentTreeCacheStats before = commentTreeCache.stats();
+
+        Mono<List<CommentTree>> find = tcp().route("find.comments.post.{postId}", "post1")
+                        .data(CommentRequest.builder().build())
+                        .retrieveFlux(CommentTree.class)
+                        .collectList();
+
+        StepVerifier
+                .create(find.then(find))
+                .expectNextMatches(it -> it.size() == 1 && it.get(0).getChildren().size() == 1)
+                .verifyComplete();
+
+        StepVerifier
+                .create(tcp().route("edit.comment.{commentId}", root.getCommentId())
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .data(new EditComment("new body"))
+                        .retrieveMono(Comment.class)
+                        .then(tcp().route("vote.comment.{commentId}.{voteType}", root.getCommentId(), VoteType.UPVOTE)
+                                .metadata(oAuth2.addTokenToMetadata(token))
+                                .retrieveMono(Void.class))
+                        .then(find))
+                .expectNextMatches(it -> it.get(0).getBody().equals("new body") &&
+                                         it.get(0).getScore() == root.getScore() + 1 &&
+                                         it.get(0).getChildren().size() == 1)
+                .verifyComplete();
+
+        CommentTreeCacheStats after = commentTreeCache.stats();
+        assertThat(after.getRebuilds() - before.getRebuilds()).isEqualTo(1);
+        assertThat(after.getHits() - before.getHits()).isEqualTo(2);
+        assertThat(after.getPatches() - before.getPatches()).isEqualTo(2);
+
+        StepVerifier
+                .create(tcp().route("create.comment")
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .data(new CreateComment("post1", root.getCommentId(), "reply"))
+                        .retrieveMono(Comment.class)
+                        .then(find))
+                .expectNextMatches(it -> it.get(0).getChildren().size() == 2)
+                .verifyComplete();
+
+        assertThat(commentTreeCache.stats().getRebuilds() - before.getRebuilds()).isEqualTo(2);
+    }
+
+    @Test
+    public void commentTreeCache_whenMissedConcurrently_shouldLoadOnceAndKeepThePatchesArrivingMeanwhile() {
+
+        CommentTreeCache cache = new CommentTreeCache(mock(CommentRepository.class), 1000, Duration.ofMinutes(1));
+        Comment root = Comment.of("post1", null, "user1", "body1");
+        root.setCommentId("comment1");
+        Comment stale = Comment.of("post1", null, "user1", "body1");
+        stale.setCommentId("comment1");
+        Sinks.One<List<CommentTree>> loaded = Sinks.one();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Mono<List<CommentTree>>> loader = () -> {
+            loads.incrementAndGet();
+            return loaded.asMono();
+        };
+
+        Mono<List<CommentTree>> first = findCachedTrees(cache, CommentRequest.builder().build(), loader);
+        Mono<List<CommentTree>> second = findCachedTrees(cache, CommentRequest.builder().build(), loader);
+        Mono<List<CommentTree>> top = findCachedTrees(cache, CommentRequest.builder().sort(CommentRequest.SortBy.TOP).build(), loader);
+
+        StepVerifier
+                .create(Flux.merge(first, second, top))
+                .then(() -> {
+                    root.setBody("new body");
+                    ReflectionTestUtils.invokeMethod(cache, "updated", root);
+                    root.setScore(5);
+                    ReflectionTestUtils.invokeMethod(cache, "scored", root);
+                    loaded.tryEmitValue(List.of(CommentTree.of(stale, List.of())));
+                })
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertThat(loads).hasValue(2);
+        StepVerifier
+                .create(findCachedTrees(cache, CommentRequest.builder().build(), loader))
+                .expectNextMatches(it -> it.get(0).getBody().equals("new body") && it.get(0).getScore() == 5)
+                .verifyComplete();
+        assertThat(loads).hasValue(2);
+        assertThat(cache.stats().getRebuilds()).isEqualTo(2);
+        assertThat(cache.stats().getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void commentTreeCache_whenCommentCreatedWhileLoading_shouldNotCacheTheLoadedPage() {
+
+        CommentTreeCache cache = new CommentTreeCache(mock(CommentRepository.class), 1000, Duration.ofMinutes(1));
+        Comment root = Comment.of("post1", null, "user1", "body1");
+        root.setCommentId("comment1");
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Mono<List<CommentTree>>> loader = () -> Mono.fromSupplier(() -> {
+            if (loads.incrementAndGet() == 1) {
+                ReflectionTestUtils.invokeMethod(cache, "created", Comment.replyTo(root, "user2", "body2"));
+            }
+            return List.of(CommentTree.of(root, List.of()));
+        });
+
+        Mono<List<CommentTree>> find = findCachedTrees(cache, CommentRequest.builder().build(), loader);
+
+        StepVerifier
+                .create(find.then(find).then(find))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private static Mono<List<CommentTree>> findCachedTrees(CommentTreeCache cache, CommentRequest request,
+                                                           Supplier<Mono<List<CommentTree>>> loader) {
+        return ReflectionTestUtils.invokeMethod(cache, "get", "post1", request, loader);
+    }
+
+    @Test
+    public void findCommentsByPostId_shouldReturnDeeplyNestedRepliesOfThePostOnly() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
+        Comment child = commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        Comment grandchild = commentRepo.save(Comment.replyTo(child, "user3", "body3")).block();
+        Comment greatGrandchild = commentRepo.save(Comment.replyTo(grandchild, "user4", "body4")).block();
+        Comment otherRoot = commentRepo.save(Comment.of("post2", null, "user5", "body5")).block();
+        commentRepo.save(Comment.replyTo(otherRoot, "user6", "body6")).block();
+
+        Flux<CommentTree> comments = tcp().route("find.comments.post.{postId}", "post1")
+                        .data(CommentRequest.builder().build())
+                        .retrieveFlux(CommentTree.class);
+
+        StepVerifier
+                .create(comments)
+                .expectNextMatches(it -> it.getCommentId().equals(root.getCommentId()) &&
+                                         it.getChildren().size() == 1 &&
+                                         it.getChildren().get(0).getCommentId().equals(child.getCommentId()) &&
+                                         it.getChildren().get(0).getChildren().get(0).getCommentId().equals(grandchild.getCommentId()) &&
+                                         it.getChildren().get(0).getChildren().get(0).getChildren().get(0).getCommentId().equals(greatGrandchild.getCommentId()) &&
+                                         it.getChildren().get(0).getChildren().get(0).getChildren().get(0).getChildren().isEmpty())
+                .verifyComplete();
+    }
+
+    @Test
+    public void findCommentsByPostId_whenMaxNodesReached_shouldReturnContinuationForTruncatedReplies() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
+        Comment child1 = commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        Comment child2 = commentRepo.save(Comment.replyTo(root, "user3", "body3")).block();
+        commentRepo.save(Comment.replyTo(root, "user4", "body4")).block();
+
+        Flux<CommentTree> comments = tcp().route("find.comments.post.{postId}", "post1")
+                        .data(CommentRequest.builder().sort(CommentRequest.SortBy.OLD).maxNodes(2).build())
+                        .retrieveFlux(CommentTree.class);
+
+        StepVerifier
+                .create(comments)
+                .expectNextMatches(it -> it.getCommentId().equals(root.getCommentId()) &&
+                                         it.getChildren().size() == 2 &&
+                                         it.getChildren().get(0).getCommentId().equals(child1.getCommentId()) &&
+                                         it.getChildren().get(1).getCommentId().equals(child2.getCommentId()) &&
+                                         it.getContinuation() != null)
+                .verifyComplete();
+    }
+
+    @Test
+    public void findCommentsByPostId_whenMaxDepthReached_shouldReturnContinuationForTruncatedReplies() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
+        Comment child = commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        commentRepo.save(Comment.replyTo(child, "user3", "body3")).block();
+        Comment root2 = commentRepo.save(Comment.of("post1", null, "user4", "body4")).block();
+        commentRepo.save(Comment.replyTo(root2, "user5", "body5")).block();
+
+        Flux<CommentTree> comments = tcp().route("find.comments.post.{postId}", "post1")
+                        .data(CommentRequest.builder().sort(CommentRequest.SortBy.OLD).maxDepth(1).build())
+                        .retrieveFlux(CommentTree.class);
+
+        StepVerifier
+                .create(comments)
+                .expectNextMatches(it -> it.getCommentId().equals(root.getCommentId()) &&
+                                         it.getContinuation() == null &&
+                                         it.getChildren().get(0).getChildren().isEmpty() &&
+                                         it.getChildren().get(0).getContinuation() != null)
+                .expectNextMatches(it -> it.getCommentId().equals(root2.getCommentId()) &&
+                                         it.getContinuation() == null &&
+                                         it.getChildren().get(0).getContinuation() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    public void findCommentContinuation_shouldReturnRemainingReplies() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
+        commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        commentRepo.save(Comment.replyTo(root, "user3", "body3")).block();
+        Comment child3 = commentRepo.save(Comment.replyTo(root, "user4", "body4")).block();
+        Comment grandchild = commentRepo.save(Comment.replyTo(child3, "user5", "body5")).block();
+
+        CommentRequest request = CommentRequest.builder().sort(CommentRequest.SortBy.OLD).maxNodes(2).build();
+
+        Mono<CommentTree> continued = tcp().route("find.comments.post.{postId}", "post1")
+                        .data(request)
+                        .retrieveFlux(CommentTree.class)
+                .next()
+                .flatMap(it -> tcp().route("find.comments.continuation.{continuation}", it.getContinuation())
+                        .data(request)
+                        .retrieveMono(CommentTree.class));
+
+        StepVerifier
+                .create(continued)
+                .expectNextMatches(it -> it.getCommentId().equals(root.getCommentId()) &&
+                                         it.getChildren().size() == 1 &&
+                                         it.getChildren().get(0).getCommentId().equals(child3.getCommentId()) &&
+                                         it.getChildren().get(0).getChildren().get(0).getCommentId().equals(grandchild.getCommentId()) &&
+                                         it.getContinuation() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    public void findCommentContinuation_whenContinuationInvalid_shouldReturnError() {
+
+        Mono<CommentTree> continued = tcp().route("find.comments.continuation.{continuation}", "test")
+                        .data(CommentRequest.builder().build())
+                        .retrieveMono(CommentTree.class);
+
+        StepVerifier
+                .create(continued)
+                .expectErrorMatches(ex -> ex.getMessage().equals(String.format(InvalidContinuationException.INVALID_CONTINUATION, "test")))
+                .verify();
+    }
+
     @Test
     public void findCommentsByPostId_shouldReturnPagedResults() {
 
@@ -130,15 +510,15 @@ public class CommentServiceApplicationTests {
         middle.setCommented(LocalDate.of(2020, Month.MARCH, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
         commentRepo.save(middle).block();
 
-        Comment oldestChild = Comment.of("post2", newest.getCommentId(), "user5", "body5");
+        Comment oldestChild = Comment.replyTo(newest, "user5", "body5");
         oldestChild.setCommented(LocalDate.of(2020, Month.MAY, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
         commentRepo.save(oldestChild).block();
 
-        Comment newestChild = Comment.of("post2", newest.getCommentId(), "user6", "body6");
+        Comment newestChild = Comment.replyTo(newest, "user6", "body6");
         newestChild.setCommented(LocalDate.of(2020, Month.OCTOBER, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
         commentRepo.save(newestChild).block();
 
-        Comment middleChild = Comment.of("post2", newest.getCommentId(), "user7", "body7");
+        Comment middleChild = Comment.replyTo(newest, "user7", "body7");
         middleChild.setCommented(LocalDate.of(2020, Month.AUGUST, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
         commentRepo.save(middleChild).block();
 
@@ -172,15 +552,15 @@ public class CommentServiceApplicationTests {
         middle.setCommented(LocalDate.of(2020, Month.MARCH, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
         commentRepo.save(middle).block();
 
-        Comment oldestChild = Comment.of("post2", newest.getCommentId(), "user5", "body5");
+        Comment oldestChild = Comment.replyTo(newest, "user5", "body5");
         oldestChild.setCommented(LocalDate.of(2020, Month.MAY, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
         commentRepo.save(oldestChild).block();
 
-        Comment newestChild = Comment.of("post2", newest.getCommentId(), "user6", "body6");
+        Comment newestChild = Comment.replyTo(newest, "user6", "body6");
         newestChild.setCommented(LocalDate.of(2020, Month.OCTOBER, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
         commentRepo.save(newestChild).block();
 
-        Comment middleChild = Comment.of("post2", newest.getCommentId(), "user7", "body7");
+        Comment middleChild = Comment.replyTo(newest, "user7", "body7");
         middleChild.setCommented(LocalDate.of(2020, Month.AUGUST, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
         commentRepo.save(middleChild).block();
 
@@ -199,6 +579,50 @@ public class CommentServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void findCommentsByPostId_whenAfterCursor_shouldReturnTheRootsFollowingTheCursor() {
+
+        Comment newest = Comment.of("post2", null, "user1", "body1");
+        newest.setCommented(LocalDate.of(2020, Month.OCTOBER, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        commentRepo.save(newest).block();
+
+        Comment middle = Comment.of("post2", null, "user2", "body2");
+        middle.setCommented(LocalDate.of(2020, Month.MARCH, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        commentRepo.save(middle).block();
+
+        Comment oldest = Comment.of("post2", null, "user3", "body3");
+        oldest.setCommented(LocalDate.of(2019, Month.DECEMBER, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        commentRepo.save(oldest).block();
+
+        CommentTree first = tcp().route("find.comments.post.{postId}", "post2")
+                        .data(CommentRequest.builder().sort(CommentRequest.SortBy.NEW).size(1).build())
+                        .retrieveFlux(CommentTree.class)
+                        .blockFirst();
+
+        Flux<CommentTree> comments = tcp().route("find.comments.post.{postId}", "post2")
+                        .data(CommentRequest.builder().sort(CommentRequest.SortBy.NEW).size(2).after(first.getCursor()).build())
+                        .retrieveFlux(CommentTree.class);
+
+        StepVerifier
+                .create(comments)
+                .expectNextMatches(it -> it.getCommentId().equals(middle.getCommentId()))
+                .expectNextMatches(it -> it.getCommentId().equals(oldest.getCommentId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void findCommentsByPostId_whenAfterCursorIsInvalid_shouldReturnError() {
+
+        Flux<CommentTree> comments = tcp().route("find.comments.post.{postId}", "post2")
+                        .data(CommentRequest.builder().after("test").build())
+                        .retrieveFlux(CommentTree.class);
+
+        StepVerifier
+                .create(comments)
+                .expectErrorMatches(ex -> ex.getMessage().equals(String.format(InvalidCursorException.INVALID_CURSOR, "test")))
+                .verify();
+    }
+
     @Test
     public void findCommentsByPostId_whenSortByTop_shouldReturnResultsSortedByScoreDesc() {
 
@@ -214,15 +638,15 @@ public class CommentServiceApplicationTests {
         middle.setScore(32L);
         commentRepo.save(middle).block();
 
-        Comment lowestChild = Comment.of("post2", lowest.getCommentId(), "user5", "body5");
+        Comment lowestChild = Comment.replyTo(lowest, "user5", "body5");
         lowestChild.setScore(-10L);
         commentRepo.save(lowestChild).block();
 
-        Comment highestChild = Comment.of("post2", lowest.getCommentId(), "user6", "body6");
+        Comment highestChild = Comment.replyTo(lowest, "user6", "body6");
         highestChild.setScore(88L);
         commentRepo.save(highestChild).block();
 
-        Comment middleChild = Comment.of("post2", lowest.getCommentId(), "user7", "body7");
+        Comment middleChild = Comment.replyTo(lowest, "user7", "body7");
         middleChild.setScore(20L);
         commentRepo.save(middleChild).block();
 
@@ -241,12 +665,49 @@ public class CommentServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void findCommentSubtree_shouldReturnDescendantsUpToMaxDepth() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
+        Comment child = commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        Comment grandchild = commentRepo.save(Comment.replyTo(child, "user3", "body3")).block();
+        Comment greatGrandchild = commentRepo.save(Comment.replyTo(grandchild, "user4", "body4")).block();
+        commentRepo.save(Comment.replyTo(greatGrandchild, "user5", "body5")).block();
+        commentRepo.save(Comment.replyTo(root, "user6", "body6")).block();
+
+        Mono<CommentTree> subtree = tcp().route("find.comments.subtree.{commentId}", child.getCommentId())
+                        .data(CommentRequest.builder().maxDepth(2).build())
+                        .retrieveMono(CommentTree.class);
+
+        StepVerifier
+                .create(subtree)
+                .expectNextMatches(it -> it.getCommentId().equals(child.getCommentId()) &&
+                                         it.getChildren().size() == 1 &&
+                                         it.getChildren().get(0).getCommentId().equals(grandchild.getCommentId()) &&
+                                         it.getChildren().get(0).getChildren().get(0).getCommentId().equals(greatGrandchild.getCommentId()) &&
+                                         it.getChildren().get(0).getChildren().get(0).getChildren().isEmpty())
+                .verifyComplete();
+    }
+
+    @Test
+    public void findCommentSubtree_whenCommentNotFound_shouldReturnError() {
+
+        Mono<CommentTree> subtree = tcp().route("find.comments.subtree.{commentId}", "test")
+                        .data(CommentRequest.builder().build())
+                        .retrieveMono(CommentTree.class);
+
+        StepVerifier
+                .create(subtree)
+                .expectErrorMatches(ex -> ex.getMessage().equals(String.format(CommentNotFoundException.COMMENT_NOT_FOUND, "test")))
+                .verify();
+    }
+
     @Test
     public void findCommentsByUsername_shouldReturnPagedResults() {
 
         commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
         Comment c2 = commentRepo.save(Comment.of("post2", null, "user2", "body2")).block();
-        commentRepo.save(Comment.of("post2", c2.getCommentId(), "user1", "body3")).block();
+        commentRepo.save(Comment.replyTo(c2, "user1", "body3")).block();
 
         Flux<Comment> comments = tcp().route("find.comments.user.{username}", "user1")
                         .data(CommentRequest.builder().page(1).size(1).build())
@@ -394,6 +855,73 @@ public class CommentServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void createComment_whenParentFound_shouldPlaceCommentUnderParent() {
+
+        Comment root = commentRepo.save(Comment.of("post", null, "user1", "body1")).block();
+        Comment child = commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Comment> created = tcp().route("create.comment")
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .data(new CreateComment("post", child.getCommentId(), "body"))
+                        .retrieveMono(Comment.class)
+                .flatMap(comment -> commentRepo.findById(comment.getCommentId()));
+
+        StepVerifier
+                .create(created)
+                .expectNextMatches(it -> it.getPath().equals(child.descendantsPath()) &&
+                                         it.getDepth() == 2)
+                .verifyComplete();
+    }
+
+    @Test
+    public void createComment_whenParentHasNoPath_shouldLeavePathToTheBackfill() {
+
+        Comment legacyParent = commentRepo.save(Comment.of("post", new ObjectId().toString(), "user1", "body1")).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Comment> created = tcp().route("create.comment")
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .data(new CreateComment("post", legacyParent.getCommentId(), "body"))
+                        .retrieveMono(Comment.class)
+                .flatMap(comment -> commentRepo.findWithoutPath(10).filter(it -> it.getCommentId().equals(comment.getCommentId())).next());
+
+        StepVerifier
+                .create(created)
+                .expectNextMatches(it -> it.getPath() == null &&
+                                         it.getParentId().equals(legacyParent.getCommentId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void findCommentsByPostId_whenCommentsHaveNoPath_shouldLoadTheirRepliesByParent() {
+
+        Comment root = commentRepo.save(Comment.of("post1", null, "user1", "body1")).block();
+        commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+        Comment legacyRoot = commentRepo.save(Comment.of("post1", null, "user3", "body3")).block();
+        legacyRoot.setPath(null);
+        commentRepo.save(legacyRoot).block();
+        Comment legacyReply = commentRepo.save(Comment.of("post1", legacyRoot.getCommentId(), "user4", "body4")).block();
+        commentRepo.save(Comment.of("post1", legacyReply.getCommentId(), "user5", "body5")).block();
+
+        StepVerifier
+                .create(tcp().route("find.comments.post.{postId}", "post1")
+                        .data(CommentRequest.builder().sort(CommentRequest.SortBy.OLD).build())
+                        .retrieveFlux(CommentTree.class)
+                        .collectList())
+                .assertNext(it -> {
+                    assertThat(it).extracting(CommentTree::getBody).containsExactly("body1", "body3");
+                    assertThat(it.get(0).getChildren()).extracting(CommentTree::getBody).containsExactly("body2");
+                    assertThat(it.get(1).getChildren()).extracting(CommentTree::getBody).containsExactly("body4");
+                    assertThat(it.get(1).getChildren().get(0).getChildren())
+                            .extracting(CommentTree::getBody).containsExactly("body5");
+                })
+                .verifyComplete();
+    }
+
     @Test
     public void createComment_shouldAutomaticallyCreateTheUpvoteForTheAuthor() {
 
@@ -752,6 +1280,430 @@ public class CommentServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @ParameterizedTest
+    @EnumSource(VoteType.class)
+    public void voteComment_whenVoteRetractedAndCastAgain_shouldKeepSingleVoteAndScore(VoteType voteType) {
+
+        Comment comment = commentRepo
+                .save(Comment.of("post", null, "another-reddit-user", "body"))
+                .block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Void> vote = tcp().route("vote.comment.{commentId}.{voteType}", comment.getCommentId(), voteType)
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .retrieveMono(Void.class);
+
+        Mono<Long> votes = vote
+                .then(vote)
+                .then(vote)
+                .then(Mono.defer(() -> voteRepo.count()));
+
+        StepVerifier
+                .create(votes)
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(commentRepo.findById(comment.getCommentId()))
+                .expectNextMatches(it -> it.getScore() == voteType.getScore())
+                .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @EnumSource(VoteType.class)
+    public void voteComment_whenVoteNotFound_shouldIncrementTheStoredScoreByTheVote(VoteType voteType) {
+
+        Comment comment = Comment.of("post", null, "another-reddit-user", "body");
+        comment.setScore(41L);
+        commentRepo.save(comment).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Comment> voted = tcp()
+                .route("vote.comment.{commentId}.{voteType}", comment.getCommentId(), voteType)
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveMono(Void.class)
+                .then(Mono.defer(() -> commentRepo.findById(comment.getCommentId())));
+
+        StepVerifier
+                .create(voted)
+                .expectNextMatches(it -> it.getScore() == 41L + voteType.getScore())
+                .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @EnumSource(VoteType.class)
+    public void voteComment_whenVoteFlipped_shouldIncrementTheStoredScoreByTwice(VoteType voteType) {
+
+        Comment comment = Comment.of("post", null, "another-reddit-user", "body");
+        comment.setScore(41L);
+        commentRepo.save(comment).block();
+        voteRepo.save(Vote.of(comment.getCommentId(), "reddit-user", voteType)).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Comment> flipped = tcp()
+                .route("vote.comment.{commentId}.{voteType}", comment.getCommentId(), voteType.opposite())
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveMono(Void.class)
+                .then(Mono.defer(() -> commentRepo.findById(comment.getCommentId())));
+
+        StepVerifier
+                .create(flipped)
+                .expectNextMatches(it -> it.getScore() == 41L + 2 * voteType.opposite().getScore())
+                .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @EnumSource(VoteType.class)
+    public void voteComment_whenVoteRetracted_shouldOnlyTakeTheVoteOffTheStoredScore(VoteType voteType) {
+
+        Comment comment = Comment.of("post", null, "another-reddit-user", "body");
+        comment.setScore(41L);
+        commentRepo.save(comment).block();
+        voteRepo.save(Vote.of(comment.getCommentId(), "reddit-user", voteType)).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Comment> retracted = tcp()
+                .route("vote.comment.{commentId}.{voteType}", comment.getCommentId(), voteType)
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveMono(Void.class)
+                .then(Mono.defer(() -> commentRepo.findById(comment.getCommentId())));
+
+        StepVerifier
+                .create(retracted)
+                .expectNextMatches(it -> it.getScore() == 41L - voteType.getScore())
+                .verifyComplete();
+    }
+
+    @Test
+    public void voteIndexMigration_whenVotesAreDuplicated_shouldKeepTheLatestVoteAndCorrectTheScore() {
+
+        Comment comment = Comment.of("post", null, "reddit-user", "body");
+        comment.setScore(1L);
+        commentRepo.save(comment).block();
+        String commentId = comment.getCommentId();
+
+        mongoOps.indexOps(Vote.class).dropIndex("comment_user").block();
+        mongoOps.insert(Vote.of(commentId, "user1", VoteType.UPVOTE)).block();
+        mongoOps.insert(Vote.of(commentId, "user1", VoteType.DOWNVOTE)).block();
+        mongoOps.insert(Vote.of(commentId, "user2", VoteType.UPVOTE)).block();
+
+        StepVerifier
+                .create(voteIndexMigration.migrate())
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(voteRepo.findAll().collectMap(Vote::getUsername, Vote::getVoteType))
+                .expectNext(Map.of("user1", VoteType.DOWNVOTE, "user2", VoteType.UPVOTE))
+                .verifyComplete();
+
+        StepVerifier
+                .create(commentRepo.findById(commentId))
+                .expectNextMatches(it -> it.getScore() == 0L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(mongoOps.indexOps(Vote.class).getIndexInfo()
+                                .filter(index -> index.getName().equals("comment_user")))
+                .expectNextMatches(IndexInfo::isUnique)
+                .verifyComplete();
+    }
+
+    @Test
+    public void updateContent_shouldNotOverwriteTheScoreWrittenSinceTheCommentWasRead() {
+
+        Comment comment = commentRepo
+                .save(Comment.of("post", null, "reddit-user", "body"))
+                .block();
+
+        commentRepo.incrementScore(comment.getCommentId(), 5L).block();
+
+        Mono<Comment> updated = commentRepo
+                .updateContent(comment.editWith(new EditComment("new body")))
+                .then(Mono.defer(() -> commentRepo.findById(comment.getCommentId())));
+
+        StepVerifier
+                .create(updated)
+                .expectNextMatches(it -> it.getBody().equals("new body") &&
+                                         it.getScore() == 5L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void voteBuffer_whenFlushFails_shouldWriteTheBufferedVotesOnTheNextFlush() {
+
+        Comment comment = commentRepo
+                .save(Comment.of("post", null, "another-reddit-user", "body"))
+                .block();
+
+        ReactiveMongoOperations failingOps = spy(mongoOps);
+        doReturn(Flux.error(new IllegalStateException("read failed"))).doCallRealMethod()
+                .when(failingOps).find(any(Query.class), eq(Vote.class));
+        doReturn(Mono.error(new IllegalStateException("write failed"))).doCallRealMethod()
+                .when(failingOps).getCollection(mongoOps.getCollectionName(Vote.class));
+
+        VoteBuffer buffer = new VoteBuffer(failingOps, commentChanges, commentTreeCache);
+        ReflectionTestUtils.setField(buffer, "capacity", 10);
+        ReflectionTestUtils.setField(buffer, "flushSize", 10);
+
+        Mono<Void> failed = buffer.add(comment.getCommentId(), "upvoter", VoteType.UPVOTE)
+                .then(buffer.add(comment.getCommentId(), "another-upvoter", VoteType.UPVOTE))
+                .then(buffer.flush())
+                .then(buffer.flush());
+
+        StepVerifier
+                .create(failed.then(commentRepo.findById(comment.getCommentId())))
+                .expectNextMatches(it -> it.getScore() == 0L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(buffer.flush().then(commentRepo.findById(comment.getCommentId())))
+                .expectNextMatches(it -> it.getScore() == 2L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(voteRepo.count())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void voteBuffer_whenFullAndFlushFails_shouldBackOffAndThenFailTheVote() {
+
+        ReactiveMongoOperations failingOps = mock(ReactiveMongoOperations.class);
+        when(failingOps.find(any(Query.class), eq(Vote.class)))
+                .thenReturn(Flux.error(new IllegalStateException("read failed")));
+
+        VoteBuffer buffer = new VoteBuffer(failingOps, commentChanges, commentTreeCache);
+        ReflectionTestUtils.setField(buffer, "capacity", 1);
+        ReflectionTestUtils.setField(buffer, "flushSize", 10);
+        ReflectionTestUtils.setField(buffer, "flushInterval", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(buffer, "fullRetries", 3);
+        ReflectionTestUtils.setField(buffer, "fullBackoff", Duration.ofMillis(10));
+
+        StepVerifier
+                .create(buffer.add("comment", "upvoter", VoteType.UPVOTE)
+                                .then(buffer.add("comment", "another-upvoter", VoteType.UPVOTE)))
+                .expectErrorMessage("Vote buffer is full")
+                .verify(Duration.ofSeconds(5));
+
+        verify(failingOps, times(4)).find(any(Query.class), eq(Vote.class));
+    }
+
+    @Test
+    public void voteBuffer_whenFlushed_shouldWriteFinalVotesAndMergedScore() {
+
+        Comment comment = commentRepo
+                .save(Comment.of("post", null, "another-reddit-user", "body"))
+                .block();
+
+        voteRepo
+                .save(Vote.of(comment.getCommentId(), "downvoter", VoteType.DOWNVOTE))
+                .block();
+
+        VoteBuffer buffer = new VoteBuffer(mongoOps, commentChanges, commentTreeCache);
+        ReflectionTestUtils.setField(buffer, "capacity", 10);
+        ReflectionTestUtils.setField(buffer, "flushSize", 10);
+
+        Mono<Void> flushed = buffer.add(comment.getCommentId(), "upvoter", VoteType.UPVOTE)
+                .then(buffer.add(comment.getCommentId(), "retracted", VoteType.UPVOTE))
+                .then(buffer.add(comment.getCommentId(), "retracted", VoteType.UPVOTE))
+                .then(buffer.add(comment.getCommentId(), "downvoter", VoteType.UPVOTE))
+                .then(buffer.flush());
+
+        StepVerifier
+                .create(flushed.then(commentRepo.findById(comment.getCommentId())))
+                .expectNextMatches(it -> it.getScore() == 3L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(voteRepo.findVoteByCommentIdAndUsername(comment.getCommentId(), "downvoter"))
+                .expectNextMatches(it -> it.getVoteType() == VoteType.UPVOTE)
+                .verifyComplete();
+
+        StepVerifier
+                .create(voteRepo.findVoteByCommentIdAndUsername(comment.getCommentId(), "retracted"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void streamChanges_whenReplyCreated_shouldPublishCreatedChangeWithAncestors() {
+
+        Comment root = commentRepo.save(Comment.of("post", null, "user1", "body1")).block();
+        Comment child = commentRepo.save(Comment.replyTo(root, "user2", "body2")).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Flux<CommentChange> changes = tcp()
+                .route("stream.changes")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveFlux(CommentChange.class);
+
+        Mono<Comment> created = Mono.delay(Duration.ofMillis(500))
+                .then(tcp()
+                        .route("create.comment")
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .data(new CreateComment("post", child.getCommentId(), "body"))
+                        .retrieveMono(Comment.class));
+
+        StepVerifier
+                .create(changes.take(1))
+                .then(created::subscribe)
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.CREATED &&
+                                         it.getPostId().equals("post") &&
+                                         it.getAuthor().equals("reddit-user") &&
+                                         it.getAncestorIds().equals(List.of(root.getCommentId(), child.getCommentId())))
+                .verifyComplete();
+    }
+
+    @Test
+    public void streamCommentsByPostId_shouldPushDeltasOfThatPostOnly() {
+
+        Comment root = commentRepo.save(Comment.of("post", null, "user1", "body1")).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Flux<CommentDelta> deltas = tcp()
+                .route("stream.comments.post.{postId}", "post")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveFlux(CommentDelta.class);
+
+        Mono<Comment> created = Mono.delay(Duration.ofMillis(500))
+                .then(tcp()
+                        .route("create.comment")
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .data(new CreateComment("other", null, "elsewhere"))
+                        .retrieveMono(Comment.class))
+                .then(tcp()
+                        .route("create.comment")
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .data(new CreateComment("post", root.getCommentId(), "reply"))
+                        .retrieveMono(Comment.class));
+
+        StepVerifier
+                .create(deltas.take(1))
+                .then(created::subscribe)
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.CREATED &&
+                                         it.getComment().getPostId().equals("post") &&
+                                         it.getComment().getBody().equals("reply") &&
+                                         it.getComment().getParentId().equals(root.getCommentId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void liveComments_whenTailingTheChangeStream_shouldClassifyTheChangesOfThePost() {
+
+        Comment comment = Comment.of("post", null, "user1", "body1");
+        comment.setCommentId(new ObjectId().toString());
+        Comment elsewhere = Comment.of("other", null, "user2", "body2");
+        elsewhere.setCommentId(new ObjectId().toString());
+
+        Sinks.Many<ChangeStreamEvent<Comment>> events = Sinks.many().unicast().onBackpressureBuffer();
+        LiveComments liveComments = changeStreamLiveComments(new CopyOnWriteArrayList<>(), events.asFlux(), Flux.never());
+
+        StepVerifier
+                .create(liveComments.streamPost("post"))
+                .then(() -> {
+                    events.tryEmitNext(changeEvent("1", OperationType.INSERT, elsewhere, null));
+                    events.tryEmitNext(changeEvent("2", OperationType.INSERT, comment, null));
+                    events.tryEmitNext(changeEvent("3", OperationType.UPDATE, comment, new BsonDocument("path", new BsonString(""))));
+                    events.tryEmitNext(changeEvent("4", OperationType.UPDATE, comment, new BsonDocument("body", new BsonString("body1"))));
+                    events.tryEmitNext(changeEvent("5", OperationType.UPDATE, comment, new BsonDocument("score", new BsonInt64(2L))));
+                    events.tryEmitNext(changeEvent("6", OperationType.UPDATE, comment.delete(), new BsonDocument("deleted", BsonBoolean.TRUE)));
+                    events.tryEmitNext(changeEvent("7", OperationType.DELETE, null, null));
+                    events.tryEmitNext(changeEvent("8", OperationType.REPLACE, comment, null));
+                })
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.CREATED &&
+                                         it.getComment().getCommentId().equals(comment.getCommentId()))
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.UPDATED)
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.SCORED)
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.DELETED && it.getComment().isDeleted())
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.UPDATED)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void liveComments_whenTheChangeStreamFails_shouldResumeAfterTheLastSeenChange() {
+
+        Comment comment = Comment.of("post", null, "user1", "body1");
+        comment.setCommentId(new ObjectId().toString());
+
+        List<ChangeStreamOptions> options = new CopyOnWriteArrayList<>();
+        Sinks.Many<ChangeStreamEvent<Comment>> first = Sinks.many().unicast().onBackpressureBuffer();
+        LiveComments liveComments = changeStreamLiveComments(
+                options,
+                first.asFlux(),
+                Flux.just(changeEvent("2", OperationType.UPDATE, comment, new BsonDocument("score", new BsonInt64(1L)))));
+
+        StepVerifier
+                .create(liveComments.streamPost("post"))
+                .then(() -> {
+                    first.tryEmitNext(changeEvent("1", OperationType.INSERT, comment, null));
+                    first.tryEmitError(new IllegalStateException("cursor closed"));
+                })
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.CREATED)
+                .expectNextMatches(it -> it.getType() == CommentChange.Type.SCORED)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(options).hasSize(2);
+        assertThat(options.get(0).getResumeToken()).isEmpty();
+        assertThat(options.get(1).getResumeToken()).contains(resumeToken("1"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private LiveComments changeStreamLiveComments(List<ChangeStreamOptions> options,
+                                                  Flux<ChangeStreamEvent<Comment>> first,
+                                                  Flux<ChangeStreamEvent<Comment>> resumed) {
+        ReactiveMongoOperations changeStreamOps = mock(ReactiveMongoOperations.class);
+        ReactiveChangeStreamOperation.ReactiveChangeStream<Comment> changeStream =
+                mock(ReactiveChangeStreamOperation.ReactiveChangeStream.class);
+        when(changeStreamOps.changeStream(Comment.class)).thenReturn(changeStream);
+        when(changeStream.withOptions(any())).thenAnswer(invocation -> {
+            ChangeStreamOptions.ChangeStreamOptionsBuilder builder = ChangeStreamOptions.builder();
+            invocation.<Consumer<ChangeStreamOptions.ChangeStreamOptionsBuilder>>getArgument(0).accept(builder);
+            options.add(builder.build());
+            return changeStream;
+        });
+        when(changeStream.listen()).thenReturn(first, resumed);
+
+        LiveComments liveComments = new LiveComments(changeStreamOps, commentRepo, commentChanges);
+        ReflectionTestUtils.setField(liveComments, "source", "change-stream");
+        ReflectionTestUtils.setField(liveComments, "bufferSize", 16);
+        return liveComments;
+    }
+
+    private ChangeStreamEvent<Comment> changeEvent(String token, OperationType operation, Comment comment, BsonDocument updatedFields) {
+        Document fullDocument = null;
+        if (comment != null) {
+            fullDocument = new Document();
+            mongoOps.getConverter().write(comment, fullDocument);
+        }
+        return new ChangeStreamEvent<>(
+                new ChangeStreamDocument<>(
+                        operation,
+                        resumeToken(token),
+                        null,
+                        null,
+                        fullDocument,
+                        null,
+                        null,
+                        updatedFields == null ? null : new UpdateDescription(List.of(), updatedFields),
+                        null,
+                        null),
+                Comment.class,
+                mongoOps.getConverter());
+    }
+
+    private static BsonDocument resumeToken(String token) {
+        return new BsonDocument("_data", new BsonString(token));
+    }
+
     @TestConfiguration
     public static class OAuth2 {
 
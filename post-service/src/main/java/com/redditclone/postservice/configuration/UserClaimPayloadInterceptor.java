@@ -0,0 +1,142 @@
+package com.redditclone.postservice.configuration;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.metadata.CompositeMetadata;
+import org.springframework.core.Ordered;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.config.annotation.rsocket.PayloadInterceptorOrder;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.rsocket.api.PayloadExchange;
+import org.springframework.security.rsocket.api.PayloadInterceptor;
+import org.springframework.security.rsocket.api.PayloadInterceptorChain;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Authenticates a request as the end user named by a claim the gateway signed with the shared secret. Used when
+ * the gateway authenticated its connection once in the SETUP frame, so the JWT of the connection is not parsed
+ * and verified again per request. The user is exposed as a {@link Jwt} with a {@code preferred_username} claim,
+ * just like a user's own bearer token.
+ * <p>
+ * A service calling another service sends a service claim instead. It is signed apart from user claims, so a user
+ * claim can never pass for one, and grants the authority {@link #serviceAuthority} of the service rather than a
+ * username, so no user can be named like a service.
+ */
+public class UserClaimPayloadInterceptor implements PayloadInterceptor, Ordered {
+
+    public static final String USER_CLAIM_MIME_TYPE = "message/x.reddit-clone.user-claim";
+
+    public static final String SERVICE_CLAIM_MIME_TYPE = "message/x.reddit-clone.service-claim";
+
+    private static final String SERVICE_CLAIM_PREFIX = "service.";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final byte[] secret;
+
+    public UserClaimPayloadInterceptor(String secret) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("User and service claims require oauth2.user-claims.secret");
+        }
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String serviceAuthority(String service) {
+        return "SERVICE_" + service;
+    }
+
+    @Override
+    public Mono<Void> intercept(PayloadExchange exchange, PayloadInterceptorChain chain) {
+        String claim = extractClaim(exchange.getPayload().sliceMetadata(), USER_CLAIM_MIME_TYPE);
+        if (claim != null) {
+            return Mono.fromCallable(() -> new JwtAuthenticationToken(toJwt(claim, verify(claim, "", "user claim"))))
+                    .flatMap(authentication -> authenticated(exchange, chain, authentication));
+        }
+        String serviceClaim = extractClaim(exchange.getPayload().sliceMetadata(), SERVICE_CLAIM_MIME_TYPE);
+        if (serviceClaim != null) {
+            return Mono.fromCallable(() -> toServiceAuthentication(serviceClaim, verify(serviceClaim, SERVICE_CLAIM_PREFIX, "service claim")))
+                    .flatMap(authentication -> authenticated(exchange, chain, authentication));
+        }
+        return chain.next(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return PayloadInterceptorOrder.AUTHENTICATION.getOrder() + 50;
+    }
+
+    private static Mono<Void> authenticated(PayloadExchange exchange, PayloadInterceptorChain chain,
+                                            JwtAuthenticationToken authentication) {
+        return chain
+                .next(exchange)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication));
+    }
+
+    private String extractClaim(ByteBuf metadata, String mimeType) {
+        if (!metadata.isReadable()) {
+            return null;
+        }
+        for (CompositeMetadata.Entry entry : new CompositeMetadata(metadata, false)) {
+            if (mimeType.equals(entry.getMimeType())) {
+                return entry.getContent().toString(StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private String verify(String claim, String prefix, String kind) {
+        String[] parts = claim.split("\\.");
+        if (parts.length != 3) {
+            throw new BadCredentialsException("Invalid " + kind);
+        }
+        try {
+            byte[] expected = sign(prefix + parts[0] + "." + parts[1]);
+            if (!MessageDigest.isEqual(expected, Base64.getUrlDecoder().decode(parts[2]))) {
+                throw new BadCredentialsException("Invalid " + kind);
+            }
+            if (Instant.ofEpochSecond(Long.parseLong(parts[1])).isBefore(Instant.now())) {
+                throw new BadCredentialsException("Expired " + kind);
+            }
+            return new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new BadCredentialsException("Invalid " + kind, ex);
+        }
+    }
+
+    private byte[] sign(String content) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            return mac.doFinal(content.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static JwtAuthenticationToken toServiceAuthentication(String claim, String service) {
+        Jwt jwt = Jwt.withTokenValue(claim)
+                .header("alg", "HS256")
+                .subject(service)
+                .build();
+        return new JwtAuthenticationToken(jwt, List.of(new SimpleGrantedAuthority(serviceAuthority(service))));
+    }
+
+    private static Jwt toJwt(String claim, String username) {
+        return Jwt.withTokenValue(claim)
+                .header("alg", "HS256")
+                .subject(username)
+                .claim("preferred_username", username)
+                .build();
+    }
+}
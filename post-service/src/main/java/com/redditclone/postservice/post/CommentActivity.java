@@ -0,0 +1,18 @@
+package com.redditclone.postservice.post;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * The comments created on a post minus the comments deleted since the last batch comment-service sent, and the
+ * time of the latest comment, if any was created.
+ */
+@Value
+public class CommentActivity {
+
+    String postId;
+    long comments;
+    Instant lastActivity;
+
+}
@@ -0,0 +1,17 @@
+package com.redditclone.postservice.post;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * The number of comments of a post as counted by comment-service, and the time of its latest comment.
+ */
+@Value
+public class CommentCount {
+
+    String postId;
+    long count;
+    Instant lastActivity;
+
+}
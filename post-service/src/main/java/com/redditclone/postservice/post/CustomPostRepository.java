@@ -0,0 +1,30 @@
+package com.redditclone.postservice.post;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface CustomPostRepository {
+
+    Flux<Post> findPageBySubredditName(String subredditName, PostRequest request);
+
+    Flux<Post> findPageByAuthor(String author, PostRequest request);
+
+    Mono<Void> incrementScore(String postId, long delta);
+
+    Mono<Post> incrementScoreAndGet(String postId, long delta);
+
+    Flux<Post> findScores(Collection<String> postIds);
+
+    Mono<Post> updateContent(Post post);
+
+    Mono<Void> applyCommentActivity(List<CommentActivity> activity);
+
+    Mono<Long> reconcileCommentCounts(List<CommentCount> counts);
+
+    Mono<Long> backfillLastActivity();
+
+    Mono<Long> backfillHotRanking();
+}
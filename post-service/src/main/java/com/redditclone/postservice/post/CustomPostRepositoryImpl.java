@@ -0,0 +1,195 @@
+package com.redditclone.postservice.post;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class CustomPostRepositoryImpl implements CustomPostRepository {
+
+    private final ReactiveMongoOperations mongoOps;
+
+    @Override
+    public Flux<Post> findPageBySubredditName(String subredditName, PostRequest request) {
+        return findPage(where("subredditName").is(subredditName), request);
+    }
+
+    @Override
+    public Flux<Post> findPageByAuthor(String author, PostRequest request) {
+        return findPage(where("author").is(author), request);
+    }
+
+    @Override
+    public Mono<Void> incrementScore(String postId, long delta) {
+        return mongoOps
+                .updateFirst(query(where("_id").is(postId)), pipeline(HotRanking.incrementScore(delta)), Post.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Post> incrementScoreAndGet(String postId, long delta) {
+        return mongoOps
+                .findAndModify(
+                        scoreQuery(where("_id").is(postId)),
+                        pipeline(HotRanking.incrementScore(delta)),
+                        FindAndModifyOptions.options().returnNew(true),
+                        Post.class);
+    }
+
+    @Override
+    public Flux<Post> findScores(Collection<String> postIds) {
+        return mongoOps.find(scoreQuery(where("_id").in(postIds)), Post.class);
+    }
+
+    @Override
+    public Mono<Void> applyCommentActivity(List<CommentActivity> activity) {
+        List<WriteModel<Document>> writes = activity.stream()
+                .map(it -> new UpdateOneModel<Document>(
+                        Filters.eq("_id", toId(it.getPostId())),
+                        it.getLastActivity() == null
+                                ? Updates.inc("commentCount", it.getComments())
+                                : Updates.combine(
+                                        Updates.inc("commentCount", it.getComments()),
+                                        Updates.max("lastActivity", Date.from(it.getLastActivity())))))
+                .collect(Collectors.toList());
+        return bulkWrite(writes).then();
+    }
+
+    @Override
+    public Mono<Long> reconcileCommentCounts(List<CommentCount> counts) {
+        List<WriteModel<Document>> writes = counts.stream()
+                .map(it -> new UpdateOneModel<Document>(
+                        Filters.and(
+                                Filters.eq("_id", toId(it.getPostId())),
+                                Filters.or(
+                                        Filters.ne("commentCount", it.getCount()),
+                                        Filters.lt("lastActivity", Date.from(it.getLastActivity())))),
+                        Updates.combine(
+                                Updates.set("commentCount", it.getCount()),
+                                Updates.max("lastActivity", Date.from(it.getLastActivity())))))
+                .collect(Collectors.toList());
+        return bulkWrite(writes).map(BulkWriteResult::getModifiedCount).map(Integer::longValue);
+    }
+
+    @Override
+    public Mono<Long> backfillLastActivity() {
+        return mongoOps
+                .updateMulti(
+                        query(where("lastActivity").exists(false)),
+                        pipeline(List.of(new Document("$set", new Document("lastActivity", "$posted")))),
+                        Post.class)
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    @Override
+    public Mono<Long> backfillHotRanking() {
+        return mongoOps
+                .updateMulti(
+                        query(where("hot").exists(false)),
+                        pipeline(List.of(HotRanking.refresh())),
+                        Post.class)
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    @Override
+    public Mono<Post> updateContent(Post post) {
+        return mongoOps
+                .updateFirst(
+                        query(where("_id").is(post.getPostId())),
+                        Update.update("title", post.getTitle())
+                                .set("body", post.getBody())
+                                .set("edited", post.getEdited())
+                                .set("deleted", post.isDeleted()),
+                        Post.class)
+                .thenReturn(post);
+    }
+
+    private Mono<BulkWriteResult> bulkWrite(List<WriteModel<Document>> writes) {
+        if (writes.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoOps
+                .getCollection(mongoOps.getCollectionName(Post.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false))));
+    }
+
+    private Flux<Post> findPage(Criteria criteria, PostRequest request) {
+        return Flux.defer(() -> mongoOps.find(pageQuery(criteria, request), Post.class));
+    }
+
+    private static Query pageQuery(Criteria criteria, PostRequest request) {
+        return request.toAfter()
+                .map(after -> query(new Criteria().andOperator(criteria, seek(request.toSort(), after)))
+                        .with(request.toSort())
+                        .limit(request.toSize()))
+                .orElseGet(() -> query(criteria).with(request.toPageable()));
+    }
+
+    private static Query scoreQuery(Criteria criteria) {
+        Query query = query(criteria);
+        query.fields().include("score").include("scoreVersion");
+        return query;
+    }
+
+    private static AggregationUpdate pipeline(List<Document> stages) {
+        return AggregationUpdate.from(stages.stream()
+                .map(stage -> (AggregationOperation) context -> stage)
+                .collect(Collectors.toList()));
+    }
+
+
+    /**
+     * Selects the posts after the cursor in the order of the sort. Posts without the sort key, such as posts not
+     * backfilled yet, sort before all others like in MongoDB, so they are paged through rather than skipped.
+     */
+    private static Criteria seek(Sort sort, PostCursor after) {
+        Sort.Order order = sort.iterator().next();
+        Object postId = ObjectId.isValid(after.getPostId()) ? new ObjectId(after.getPostId()) : after.getPostId();
+        String property = order.getProperty();
+        if (property.equals(PostRequest.ID)) {
+            return beyond(where(PostRequest.ID), order, postId);
+        }
+        Criteria sameKey = beyond(where(property).is(after.getKey()).and(PostRequest.ID), order, postId);
+        if (after.getKey() == null) {
+            return order.isAscending()
+                    ? new Criteria().orOperator(where(property).ne(null), sameKey)
+                    : sameKey;
+        }
+        return order.isAscending()
+                ? new Criteria().orOperator(beyond(where(property), order, after.getKey()), sameKey)
+                : new Criteria().orOperator(beyond(where(property), order, after.getKey()), where(property).is(null), sameKey);
+    }
+
+    private static Criteria beyond(Criteria criteria, Sort.Order order, Object value) {
+        return order.isAscending() ? criteria.gt(value) : criteria.lt(value);
+    }
+
+    private static Object toId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
@@ -0,0 +1,48 @@
+package com.redditclone.postservice.post;
+
+import lombok.experimental.UtilityClass;
+import org.bson.Document;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ranks posts by the order of magnitude of their score plus a bonus that grows with the time they were posted,
+ * so a post needs ten times the score of a post {@link #DECAY_MILLIS} younger to rank equally.
+ */
+@UtilityClass
+public class HotRanking {
+
+    public static final Instant EPOCH = Instant.parse("2020-01-01T00:00:00Z");
+    public static final long DECAY_MILLIS = 45_000_000L;
+
+    public static double of(long score, Instant posted) {
+        return Math.signum(score) * Math.log10(Math.max(Math.abs(score), 1))
+               + (double) (posted.toEpochMilli() - EPOCH.toEpochMilli()) / DECAY_MILLIS;
+    }
+
+    /**
+     * Update pipeline that increments the score and its version and recomputes the ranking from the stored values.
+     */
+    public static List<Document> incrementScore(long delta) {
+        return List.of(
+                new Document("$set", new Document("score", new Document("$add", Arrays.asList("$score", delta)))
+                        .append("scoreVersion", new Document("$add", Arrays.asList(
+                                new Document("$ifNull", Arrays.asList("$scoreVersion", 0L)), 1L)))),
+                refresh());
+    }
+
+    /**
+     * Update pipeline stage that recomputes the ranking from the stored score and posted time.
+     */
+    public static Document refresh() {
+        Document magnitude = new Document("$multiply", Arrays.asList(
+                new Document("$cmp", Arrays.asList("$score", 0)),
+                new Document("$log10", new Document("$max", Arrays.asList(new Document("$abs", "$score"), 1)))));
+        Document age = new Document("$divide", Arrays.asList(
+                new Document("$subtract", Arrays.asList(new Document("$toLong", "$posted"), EPOCH.toEpochMilli())),
+                DECAY_MILLIS));
+        return new Document("$set", new Document("hot", new Document("$add", Arrays.asList(magnitude, age))));
+    }
+}
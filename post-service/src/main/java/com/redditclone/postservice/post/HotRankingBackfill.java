@@ -0,0 +1,28 @@
+package com.redditclone.postservice.post;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes the hot ranking of posts stored before it existed. The ranking only depends on the score and the posted
+ * time, and every score write recomputes it, so posts that have one never need to be ranked again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "posts.hot-backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class HotRankingBackfill implements ApplicationRunner {
+
+    private final PostRepository postRepo;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        postRepo.backfillHotRanking().subscribe(
+                count -> log.info("Backfilled the hot ranking of {} posts", count),
+                ex -> log.error("Hot ranking backfill failed", ex));
+    }
+}
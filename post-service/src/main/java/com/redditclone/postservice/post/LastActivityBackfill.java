@@ -0,0 +1,28 @@
+package com.redditclone.postservice.post;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sets the last activity of posts stored before it existed to the time they were posted, so they can be sorted
+ * by activity. Their comment count is left to the reconciliation of comment-service.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "posts.last-activity-backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class LastActivityBackfill implements ApplicationRunner {
+
+    private final PostRepository postRepo;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        postRepo.backfillLastActivity().subscribe(
+                count -> log.info("Backfilled the last activity of {} posts", count),
+                ex -> log.error("Last activity backfill failed", ex));
+    }
+}
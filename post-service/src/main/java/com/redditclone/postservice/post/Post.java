@@ -1,11 +1,13 @@
 package com.redditclone.postservice.post;
 
-import com.redditclone.postservice.vote.Score;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -13,8 +15,19 @@ import java.time.temporal.ChronoUnit;
 
 @Data
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @Document("posts")
+@CompoundIndex(name = "subreddit_id", def = "{'subredditName': 1, '_id': -1}")
+@CompoundIndex(name = "subreddit_posted", def = "{'subredditName': 1, 'posted': -1, '_id': -1}")
+@CompoundIndex(name = "subreddit_score", def = "{'subredditName': 1, 'score': -1, '_id': -1}")
+@CompoundIndex(name = "subreddit_hot", def = "{'subredditName': 1, 'hot': -1, '_id': -1}")
+@CompoundIndex(name = "subreddit_active", def = "{'subredditName': 1, 'lastActivity': -1, '_id': -1}")
+@CompoundIndex(name = "author_id", def = "{'author': 1, '_id': -1}")
+@CompoundIndex(name = "author_posted", def = "{'author': 1, 'posted': -1, '_id': -1}")
+@CompoundIndex(name = "author_score", def = "{'author': 1, 'score': -1, '_id': -1}")
+@CompoundIndex(name = "author_hot", def = "{'author': 1, 'hot': -1, '_id': -1}")
+@CompoundIndex(name = "author_active", def = "{'author': 1, 'lastActivity': -1, '_id': -1}")
 public class Post {
 
     @Id
@@ -24,11 +37,18 @@ public class Post {
     String title;
     String body;
     long score;
+    long scoreVersion;
+    double hot;
     Instant posted;
     Instant edited;
     boolean deleted;
+    long commentCount;
+    Instant lastActivity;
+    @Transient
+    String cursor;
 
     public static Post of(String subredditName, String author, String title, String body) {
+        Instant posted = Instant.now().truncatedTo(ChronoUnit.MILLIS);
         return new Post(
                 null,
                 subredditName,
@@ -36,14 +56,21 @@ public class Post {
                 title,
                 body,
                 0L,
-                Instant.now().truncatedTo(ChronoUnit.MILLIS),
+                0L,
+                HotRanking.of(0L, posted),
+                posted,
                 null,
-                false
+                false,
+                0L,
+                posted,
+                null
         );
     }
 
-    public Post updateScoreWith(Score score) {
-        this.score = score.getScore();
+    public Post incrementScore(long delta) {
+        score += delta;
+        scoreVersion++;
+        hot = HotRanking.of(score, posted);
         return this;
     }
 
@@ -54,6 +81,11 @@ public class Post {
         return this;
     }
 
+    public Post withCursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
     public Post delete() {
         deleted = true;
         return this;
@@ -0,0 +1,27 @@
+package com.redditclone.postservice.post;
+
+import lombok.Value;
+
+/**
+ * A compact notice that a post changed, for consumers that cache posts. Only the post id is always set.
+ */
+@Value
+public class PostChange {
+
+    Type type;
+    String postId;
+    String subredditName;
+    String author;
+
+    public static PostChange of(Type type, Post post) {
+        return new PostChange(type, post.getPostId(), post.getSubredditName(), post.getAuthor());
+    }
+
+    public static PostChange scored(String postId) {
+        return new PostChange(Type.SCORED, postId, null, null);
+    }
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, SCORED
+    }
+}
@@ -0,0 +1,27 @@
+package com.redditclone.postservice.post;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Publishes post changes to every subscriber of {@code stream.changes}. Each subscriber buffers up to
+ * {@code buffer-size} changes and fails once it falls further behind, so it knows to drop what it cached.
+ */
+@Component
+public class PostChanges {
+
+    private final Sinks.Many<PostChange> sink = Sinks.many().multicast().directBestEffort();
+
+    @Value("${posts.changes.buffer-size:1024}")
+    private int bufferSize;
+
+    public void publish(PostChange change) {
+        sink.emitNext(change, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+
+    public Flux<PostChange> stream() {
+        return sink.asFlux().onBackpressureBuffer(bufferSize);
+    }
+}
@@ -10,6 +10,8 @@ import org.springframework.stereotype.Controller;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @Controller
 @RequiredArgsConstructor
 public class PostController {
@@ -33,6 +35,16 @@ public class PostController {
         return postService.findPostById(postId);
     }
 
+    @MessageMapping("stream.changes")
+    public Flux<PostChange> streamChanges() {
+        return postService.streamChanges();
+    }
+
+    @MessageMapping("stream.scores")
+    public Flux<PostScore> streamScores(List<String> postIds) {
+        return postService.streamScores(postIds);
+    }
+
     @MessageMapping("create.post")
     public Mono<Post> createPost(@AuthenticationPrincipal Jwt jwt,
                                  CreatePost create) {
@@ -52,6 +64,16 @@ public class PostController {
         return postService.deletePost(postId, jwt.getClaim("preferred_username"));
     }
 
+    @MessageMapping("apply.comment-activity")
+    public Mono<Void> applyCommentActivity(List<CommentActivity> activity) {
+        return postService.applyCommentActivity(activity);
+    }
+
+    @MessageMapping("reconcile.comment-counts")
+    public Mono<Long> reconcileCommentCounts(List<CommentCount> counts) {
+        return postService.reconcileCommentCounts(counts);
+    }
+
     @MessageMapping("vote.post.{postId}.{voteType}")
     public Mono<Void> votePost(@DestinationVariable String postId,
                                @DestinationVariable VoteType voteType,
@@ -0,0 +1,45 @@
+package com.redditclone.postservice.post;
+
+import lombok.Value;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonWriterSettings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a post listing: the sort key of the last post seen plus its ID as tiebreaker.
+ */
+@Value
+public class PostCursor {
+
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    Object key;
+    String postId;
+
+    public static PostCursor of(Object key, String postId) {
+        return new PostCursor(key, postId);
+    }
+
+    public static PostCursor decode(String token) {
+        try {
+            Document decoded = Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            String postId = decoded.getString("id");
+            if (postId == null || !decoded.containsKey("key")) {
+                throw new IllegalArgumentException(decoded.toJson());
+            }
+            return new PostCursor(decoded.get("key"), postId);
+        } catch (IllegalArgumentException | ClassCastException | JsonParseException ex) {
+            throw new InvalidCursorException(token, ex);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(new Document("key", key).append("id", postId).toJson(JSON).getBytes(StandardCharsets.UTF_8));
+    }
+}
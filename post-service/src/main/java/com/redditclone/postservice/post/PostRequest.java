@@ -9,36 +9,63 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
+import java.util.Date;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Data
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class PostRequest {
 
+    public static final String ID = "_id";
+
     Integer page;
     Integer size;
     SortBy sort;
+    String after;
 
     @Getter
     public enum SortBy {
-        NEW(Sort.by("posted").descending()),
-        OLD(Sort.by("posted").ascending()),
-        TOP(Sort.by("score").descending());
+        NEW(Sort.by(Sort.Direction.DESC, "posted", ID), post -> Date.from(post.getPosted())),
+        OLD(Sort.by(Sort.Direction.ASC, "posted", ID), post -> Date.from(post.getPosted())),
+        TOP(Sort.by(Sort.Direction.DESC, "score", ID), Post::getScore),
+        HOT(Sort.by(Sort.Direction.DESC, "hot", ID), Post::getHot),
+        ACTIVE(Sort.by(Sort.Direction.DESC, "lastActivity", ID), post -> post.getLastActivity() == null
+                ? null
+                : Date.from(post.getLastActivity()));
 
         Sort sort;
+        Function<Post, Object> key;
 
-        SortBy(Sort sort) {
+        SortBy(Sort sort, Function<Post, Object> key) {
             this.sort = sort;
+            this.key = key;
         }
     }
 
     public Pageable toPageable() {
         return PageRequest.of(
                 Optional.ofNullable(page).orElse(0),
-                Optional.ofNullable(size).orElse(10),
-                Optional.ofNullable(sort).map(SortBy::getSort).orElse(Sort.unsorted())
+                toSize(),
+                toSort()
         );
     }
-}
 
+    public Sort toSort() {
+        return Optional.ofNullable(sort).map(SortBy::getSort).orElse(Sort.by(ID));
+    }
+
+    public int toSize() {
+        return Optional.ofNullable(size).orElse(10);
+    }
+
+    public Optional<PostCursor> toAfter() {
+        return Optional.ofNullable(after).map(PostCursor::decode);
+    }
+
+    public String cursorOf(Post post) {
+        Object key = Optional.ofNullable(sort).map(it -> it.getKey().apply(post)).orElse(null);
+        return PostCursor.of(key, post.getPostId()).encode();
+    }
+}
@@ -0,0 +1,11 @@
+package com.redditclone.postservice.post;
+
+import lombok.Value;
+
+@Value
+public class PostScore {
+
+    String postId;
+    long score;
+
+}
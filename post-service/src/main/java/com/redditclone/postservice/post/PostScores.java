@@ -0,0 +1,137 @@
+package com.redditclone.postservice.post;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans out the scores the vote path writes to the subscribers of {@code stream.scores}. Scores are conflated per
+ * post and handed to every subscriber at most once per {@code interval} by a single shared ticker. A subscriber
+ * that is slower than that receives the latest score of each post once it asks for more, not every score.
+ * Scores written or read concurrently may arrive out of order, so a score only replaces a pending, seeded or
+ * delivered one of the same post if its {@code scoreVersion} is higher.
+ */
+@Component
+public class PostScores {
+
+    private final PostRepository postRepo;
+    private final Map<String, Post> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Flux<Map<String, Post>> ticks;
+
+    public PostScores(PostRepository postRepo,
+                      @Value("${posts.scores.interval:500ms}") Duration interval) {
+        this.postRepo = postRepo;
+        this.ticks = Flux.interval(interval)
+                .onBackpressureDrop()
+                .map(tick -> drain())
+                .filter(scores -> !scores.isEmpty())
+                .share();
+    }
+
+    public void publish(Post scored) {
+        if (subscribers.get() > 0) {
+            pending.merge(scored.getPostId(), scored, PostScores::newer);
+        }
+    }
+
+    /**
+     * Publishes the current scores of posts whose score was written without being read back.
+     */
+    public Mono<Void> publishCurrent(Collection<String> postIds) {
+        if (subscribers.get() == 0 || postIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return postRepo.findScores(postIds)
+                .doOnNext(this::publish)
+                .then();
+    }
+
+    public Flux<PostScore> stream(Collection<String> postIds) {
+        Set<String> watched = Set.copyOf(postIds);
+        return Flux.defer(() -> {
+            subscribers.incrementAndGet();
+            Map<String, Post> changed = new HashMap<>();
+            Map<String, Long> versions = new HashMap<>();
+            Flux<Boolean> updates = ticks
+                    .map(scores -> collect(scores, watched, changed, versions));
+            Flux<Boolean> current = postRepo.findScores(watched)
+                    .map(post -> seed(post, changed, versions));
+            return Flux.merge(updates, current)
+                    .onBackpressureLatest()
+                    .concatMapIterable(signal -> take(changed), 1)
+                    .doFinally(signal -> subscribers.decrementAndGet());
+        });
+    }
+
+    private Map<String, Post> drain() {
+        Map<String, Post> drained = new HashMap<>();
+        for (String postId : pending.keySet()) {
+            Post scored = pending.remove(postId);
+            if (scored != null) {
+                drained.put(postId, scored);
+            }
+        }
+        return drained;
+    }
+
+    private static boolean collect(Map<String, Post> scores, Set<String> watched,
+                                   Map<String, Post> changed, Map<String, Long> versions) {
+        synchronized (changed) {
+            if (scores.size() < watched.size()) {
+                scores.forEach((postId, scored) -> {
+                    if (watched.contains(postId)) {
+                        offer(scored, changed, versions);
+                    }
+                });
+            } else {
+                watched.forEach(postId -> {
+                    Post scored = scores.get(postId);
+                    if (scored != null) {
+                        offer(scored, changed, versions);
+                    }
+                });
+            }
+            return !changed.isEmpty();
+        }
+    }
+
+    private static boolean seed(Post post, Map<String, Post> changed, Map<String, Long> versions) {
+        synchronized (changed) {
+            offer(post, changed, versions);
+            return true;
+        }
+    }
+
+    private static void offer(Post scored, Map<String, Post> changed, Map<String, Long> versions) {
+        Long version = versions.get(scored.getPostId());
+        if (version == null || scored.getScoreVersion() > version) {
+            versions.put(scored.getPostId(), scored.getScoreVersion());
+            changed.put(scored.getPostId(), scored);
+        }
+    }
+
+    private static Post newer(Post pending, Post scored) {
+        return scored.getScoreVersion() > pending.getScoreVersion() ? scored : pending;
+    }
+
+    private static List<PostScore> take(Map<String, Post> changed) {
+        synchronized (changed) {
+            List<PostScore> taken = new ArrayList<>(changed.size());
+            changed.forEach((postId, scored) -> taken.add(new PostScore(postId, scored.getScore())));
+            changed.clear();
+            return taken;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.redditclone.postservice.post;
 
+import com.redditclone.postservice.vote.VoteBuffer;
 import com.redditclone.postservice.vote.VoteService;
 import com.redditclone.postservice.vote.VoteType;
 import lombok.RequiredArgsConstructor;
@@ -7,19 +8,29 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class PostService {
 
     private final PostRepository postRepo;
     private final VoteService voteService;
+    private final Optional<VoteBuffer> voteBuffer;
+    private final PostChanges postChanges;
+    private final PostScores postScores;
 
     public Flux<Post> findPostsBySubreddit(String subredditName, PostRequest request) {
-        return postRepo.findBySubredditName(subredditName, request.toPageable());
+        return postRepo
+                .findPageBySubredditName(subredditName, request)
+                .map(post -> post.withCursor(request.cursorOf(post)));
     }
 
     public Flux<Post> findPostsByUsername(String username, PostRequest request) {
-        return postRepo.findByAuthor(username, request.toPageable());
+        return postRepo
+                .findPageByAuthor(username, request)
+                .map(post -> post.withCursor(request.cursorOf(post)));
     }
 
     public Mono<Post> findPostById(String postId) {
@@ -28,27 +39,31 @@ public class PostService {
                 .switchIfEmpty(Mono.error(new PostNotFoundException(postId)));
     }
 
+    public Flux<PostChange> streamChanges() {
+        return postChanges.stream();
+    }
+
+    public Flux<PostScore> streamScores(List<String> postIds) {
+        return postScores.stream(postIds);
+    }
+
     public Mono<Post> createPost(String username, CreatePost create) {
         return postRepo
                 .insert(Post.of(create.getSubredditName(), username, create.getTitle(), create.getBody()))
                 .flatMap(post -> voteService
                         .votePost(post.getPostId(), VoteType.UPVOTE, post.getAuthor())
-                        .then(Mono.defer(() -> updatePostScore(post)))
-                        .thenReturn(post));
-    }
-
-    private Mono<Post> updatePostScore(Post post) {
-        return voteService
-                .calculateScoreByPostId(post.getPostId())
-                .map(post::updateScoreWith)
-                .flatMap(postRepo::save);
+                        .flatMap(delta -> postRepo
+                                .incrementScore(post.getPostId(), delta)
+                                .then(Mono.fromSupplier(() -> post.incrementScore(delta)))))
+                .doOnNext(post -> postChanges.publish(PostChange.of(PostChange.Type.CREATED, post)));
     }
 
     public Mono<Post> editPost(String postId, String username, EditPost edit) {
         return findPostById(postId)
                 .filter(post -> post.getAuthor().equals(username))
                 .map(post -> post.editWith(edit))
-                .flatMap(postRepo::save)
+                .flatMap(postRepo::updateContent)
+                .doOnNext(post -> postChanges.publish(PostChange.of(PostChange.Type.UPDATED, post)))
                 .switchIfEmpty(Mono.error(new NotAuthorOfPostException(username, postId)));
     }
 
@@ -56,16 +71,30 @@ public class PostService {
         return findPostById(postId)
                 .filter(post -> post.getAuthor().equals(username))
                 .map(Post::delete)
-                .flatMap(postRepo::save)
+                .flatMap(postRepo::updateContent)
+                .doOnNext(post -> postChanges.publish(PostChange.of(PostChange.Type.DELETED, post)))
                 .switchIfEmpty(Mono.error(new NotAuthorOfPostException(username, postId)))
                 .then();
     }
 
+    public Mono<Void> applyCommentActivity(List<CommentActivity> activity) {
+        return postRepo.applyCommentActivity(activity);
+    }
+
+    public Mono<Long> reconcileCommentCounts(List<CommentCount> counts) {
+        return postRepo.reconcileCommentCounts(counts);
+    }
+
     public Mono<Void> votePost(String postId, VoteType voteType, String username) {
         return findPostById(postId)
-                .flatMap(post -> voteService
-                        .votePost(post.getPostId(), voteType, username)
-                        .then(Mono.defer(() -> updatePostScore(post))))
+                .flatMap(post -> voteBuffer
+                        .map(buffer -> buffer.add(post.getPostId(), username, voteType))
+                        .orElseGet(() -> voteService
+                                .votePost(post.getPostId(), voteType, username)
+                                .flatMap(delta -> postRepo.incrementScoreAndGet(post.getPostId(), delta))
+                                .doOnNext(postScores::publish)
+                                .then()
+                                .doOnSuccess(updated -> postChanges.publish(PostChange.scored(post.getPostId())))))
                 .then();
     }
 
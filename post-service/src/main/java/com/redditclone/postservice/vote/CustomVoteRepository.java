@@ -4,5 +4,5 @@ import reactor.core.publisher.Mono;
 
 public interface CustomVoteRepository {
 
-    Mono<Score> calculateScoreByPostId(String postId);
+    Mono<Vote> toggleVote(String postId, String username, VoteType voteType);
 }
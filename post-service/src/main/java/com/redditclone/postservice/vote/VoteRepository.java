@@ -1,9 +1,11 @@
 package com.redditclone.postservice.vote;
 
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Mono;
 
 public interface VoteRepository extends ReactiveMongoRepository<Vote, String>, CustomVoteRepository {
 
+    @Query("{ 'postId': ?0, 'username': ?1, 'voteType': { $ne: null } }")
     Mono<Vote> findVoteByPostIdAndUsername(String postId, String username);
 }
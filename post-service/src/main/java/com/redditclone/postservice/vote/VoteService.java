@@ -1,8 +1,10 @@
 package com.redditclone.postservice.vote;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 @Service
 @RequiredArgsConstructor
@@ -10,22 +12,21 @@ public class VoteService {
 
     private final VoteRepository voteRepo;
 
-    public Mono<Vote> votePost(String postId, VoteType voteType, String username) {
+    /**
+     * Records the vote and emits the resulting change of the post score.
+     */
+    public Mono<Long> votePost(String postId, VoteType voteType, String username) {
         return voteRepo
-                .findVoteByPostIdAndUsername(postId, username)
-                .flatMap(vote -> overrideVoteIfOppositeTypeOrDeleteIfSameType(vote, voteType))
-                .switchIfEmpty(Mono.defer(() -> voteRepo.insert(Vote.of(postId, username, voteType))));
+                .toggleVote(postId, username, voteType)
+                .map(previous -> scoreDelta(previous.getVoteType(), voteType))
+                .defaultIfEmpty(voteType.getScore())
+                .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance));
     }
 
-    public Mono<Score> calculateScoreByPostId(String postId) {
-        return voteRepo.calculateScoreByPostId(postId);
-    }
-
-    private Mono<Vote> overrideVoteIfOppositeTypeOrDeleteIfSameType(Vote vote, VoteType voteType) {
-        return Mono.just(vote)
-                .filter(it -> it.getVoteType().equals(voteType.opposite()))
-                .doOnNext(it -> it.setVoteType(voteType))
-                .flatMap(voteRepo::save)
-                .switchIfEmpty(Mono.defer(() -> voteRepo.delete(vote).thenReturn(vote)));
+    private long scoreDelta(VoteType previous, VoteType voteType) {
+        if (previous == null) {
+            return voteType.getScore();
+        }
+        return previous == voteType ? -voteType.getScore() : 2 * voteType.getScore();
     }
 }
@@ -5,18 +5,24 @@ import lombok.Getter;
 @Getter
 public enum VoteType {
 
-    UPVOTE {
+    UPVOTE(1L) {
         @Override
         public VoteType opposite() {
             return DOWNVOTE;
         }
     },
-    DOWNVOTE {
+    DOWNVOTE(-1L) {
         @Override
         public VoteType opposite() {
             return UPVOTE;
         }
     };
 
+    private final long score;
+
+    VoteType(long score) {
+        this.score = score;
+    }
+
     public abstract VoteType opposite();
 }
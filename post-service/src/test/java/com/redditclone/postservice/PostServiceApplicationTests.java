@@ -1,7 +1,20 @@
 package com.redditclone.postservice;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.redditclone.postservice.configuration.CachingJwtDecoder;
+import com.redditclone.postservice.configuration.JwkSetSource;
+import com.redditclone.postservice.configuration.UserClaimPayloadInterceptor;
 import com.redditclone.postservice.post.*;
 import com.redditclone.postservice.vote.Vote;
+import com.redditclone.postservice.vote.VoteBuffer;
+import com.redditclone.postservice.vote.VoteIndexMigration;
 import com.redditclone.postservice.vote.VoteRepository;
 import com.redditclone.postservice.vote.VoteType;
 import io.rsocket.metadata.WellKnownMimeType;
@@ -13,6 +26,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.MediaType;
 import org.springframework.messaging.rsocket.RSocketRequester;
 import org.springframework.security.oauth2.client.endpoint.OAuth2PasswordGrantRequest;
@@ -20,18 +38,49 @@ import org.springframework.security.oauth2.client.endpoint.WebClientReactivePass
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
 import org.springframework.security.rsocket.metadata.BearerTokenAuthenticationEncoder;
 import org.springframework.security.rsocket.metadata.BearerTokenMetadata;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 public class PostServiceApplicationTests {
@@ -48,6 +97,18 @@ public class PostServiceApplicationTests {
     @Autowired
     private VoteRepository voteRepo;
 
+    @Autowired
+    private ReactiveMongoOperations mongoOps;
+
+    @Autowired
+    private PostChanges postChanges;
+
+    @Autowired
+    private PostScores postScores;
+
+    @Autowired
+    private VoteIndexMigration voteIndexMigration;
+
     @Autowired
     private OAuth2 oAuth2;
 
@@ -112,6 +173,55 @@ public class PostServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void findPostsBySubredditName_whenAfterCursor_shouldReturnThePostsFollowingTheCursor() {
+
+        List<Long> scores = List.of(20L, 20L, 10L, 5L);
+        scores.forEach(score -> {
+            Post post = Post.of("test1", "author1", "title", "body");
+            post.setScore(score);
+            postRepo.save(post).block();
+        });
+
+        List<Post> firstPage = tcp()
+                .route("find.posts.subreddit.{subredditName}", "test1")
+                .data(PostRequest.builder().sort(PostRequest.SortBy.TOP).size(2).build())
+                .retrieveFlux(Post.class)
+                .collectList()
+                .block();
+
+        Flux<Post> secondPage = tcp()
+                .route("find.posts.subreddit.{subredditName}", "test1")
+                .data(PostRequest.builder().sort(PostRequest.SortBy.TOP).size(2).after(firstPage.get(1).getCursor()).build())
+                .retrieveFlux(Post.class);
+
+        StepVerifier
+                .create(secondPage)
+                .expectNextMatches(it -> it.getScore() == 10L)
+                .expectNextMatches(it -> it.getScore() == 5L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(Flux.fromIterable(firstPage))
+                .expectNextMatches(it -> it.getScore() == 20L)
+                .expectNextMatches(it -> it.getScore() == 20L && !it.getPostId().equals(firstPage.get(0).getPostId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void findPostsBySubredditName_whenAfterCursorIsInvalid_shouldReturnError() {
+
+        Flux<Post> postsBySubredditName = tcp()
+                .route("find.posts.subreddit.{subredditName}", "test1")
+                .data(PostRequest.builder().sort(PostRequest.SortBy.NEW).after("test").build())
+                .retrieveFlux(Post.class);
+
+        StepVerifier
+                .create(postsBySubredditName)
+                .expectErrorMatches(ex -> ex.getMessage().equals(String.format(InvalidCursorException.INVALID_CURSOR, "test")))
+                .verify();
+    }
+
     @Test
     public void findPostsBySubredditName_whenSortByOld_shouldReturnResultsSortedByPostedAsc() {
 
@@ -140,6 +250,85 @@ public class PostServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void findPostsBySubredditName_whenSortByHot_shouldRankFreshPostsAboveOlderHigherScoredPosts() {
+
+        Post old = Post.of("test1", "author1", "title1", "body1");
+        old.setPosted(old.getPosted().minus(Duration.ofDays(2)));
+        old.setScore(100L);
+        old.setHot(HotRanking.of(old.getScore(), old.getPosted()));
+        postRepo.save(old).block();
+
+        Post fresh = Post.of("test1", "author1", "title2", "body2");
+        fresh.setScore(10L);
+        fresh.setHot(HotRanking.of(fresh.getScore(), fresh.getPosted()));
+        postRepo.save(fresh).block();
+
+        Post buried = Post.of("test1", "author2", "title3", "body3");
+        buried.setScore(-10L);
+        buried.setHot(HotRanking.of(buried.getScore(), buried.getPosted()));
+        postRepo.save(buried).block();
+
+        Flux<Post> postsBySubredditName = tcp()
+                .route("find.posts.subreddit.{subredditName}", "test1")
+                .data(PostRequest.builder().sort(PostRequest.SortBy.HOT).build())
+                .retrieveFlux(Post.class);
+
+        StepVerifier
+                .create(postsBySubredditName)
+                .expectNextMatches(it -> it.getPostId().equals(fresh.getPostId()))
+                .expectNextMatches(it -> it.getPostId().equals(buried.getPostId()))
+                .expectNextMatches(it -> it.getPostId().equals(old.getPostId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void votePost_shouldRefreshTheHotRankingOfThePost() {
+
+        Post post = postRepo
+                .save(Post.of("subreddit", "another-reddit-user", "title", "body"))
+                .block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Post> voted = tcp().route("vote.post.{postId}.{voteType}", post.getPostId(), VoteType.UPVOTE)
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .retrieveMono(Void.class)
+                .then(Mono.defer(() -> postRepo.findById(post.getPostId())));
+
+        StepVerifier
+                .create(voted)
+                .expectNextMatches(it -> it.getScore() == 1L &&
+                                         Math.abs(it.getHot() - HotRanking.of(1L, it.getPosted())) < 1e-9)
+                .verifyComplete();
+    }
+
+    @Test
+    public void backfillHotRanking_shouldOnlyRankThePostsStoredWithoutARanking() {
+
+        Post post = Post.of("subreddit", "reddit-user", "title", "body");
+        post.setScore(10L);
+        postRepo.save(post).block();
+        postRepo.save(Post.of("subreddit", "reddit-user", "title", "body")).block();
+        mongoOps.updateFirst(Query.query(Criteria.where("_id").is(post.getPostId())), new Update().unset("hot"), Post.class)
+                .block();
+
+        StepVerifier
+                .create(postRepo.backfillHotRanking())
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(postRepo.findById(post.getPostId()))
+                .expectNextMatches(it -> Math.abs(it.getHot() - HotRanking.of(10L, it.getPosted())) < 1e-9)
+                .verifyComplete();
+
+        StepVerifier
+                .create(postRepo.backfillHotRanking())
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
     @Test
     public void findPostsBySubredditName_whenSortByTop_shouldReturnResultsSortedByScoreDesc() {
 
@@ -336,6 +525,51 @@ public class PostServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void createPost_whenSetupAuthenticated_shouldCreatePostForTheSignedUserClaim() {
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        RSocketRequester requester = requesterBuilder
+                .dataMimeType(MediaType.APPLICATION_CBOR)
+                .rsocketStrategies(configurer -> configurer.encoder(new BearerTokenAuthenticationEncoder()))
+                .setupMetadata(new BearerTokenMetadata(token), OAuth2.AUTHENTICATION_MIME_TYPE)
+                .tcp("localhost", port);
+
+        Mono<Post> post = requester
+                .route("create.post")
+                .metadata(oAuth2.signUserClaim("claimed-user", Instant.now().plusSeconds(30), "test-secret"))
+                .data(new CreatePost("test", "title", "body"))
+                .retrieveMono(Post.class);
+
+        StepVerifier
+                .create(post)
+                .expectNextMatches(it -> it.getAuthor().equals("claimed-user"))
+                .verifyComplete();
+
+        Mono<Post> forged = requester
+                .route("create.post")
+                .metadata(oAuth2.signUserClaim("claimed-user", Instant.now().plusSeconds(30), "wrong-secret"))
+                .data(new CreatePost("test", "title", "body"))
+                .retrieveMono(Post.class);
+
+        StepVerifier
+                .create(forged)
+                .verifyErrorMatches(ex -> ex.getMessage().equals("Invalid user claim"));
+
+        Mono<Post> expired = requester
+                .route("create.post")
+                .metadata(oAuth2.signUserClaim("claimed-user", Instant.now().minusSeconds(1), "test-secret"))
+                .data(new CreatePost("test", "title", "body"))
+                .retrieveMono(Post.class);
+
+        StepVerifier
+                .create(expired)
+                .verifyErrorMatches(ex -> ex.getMessage().equals("Expired user claim"));
+
+        requester.rsocketClient().dispose();
+    }
+
     @Test
     public void createPost_shouldAutomaticallyCreateTheUpvoteForTheAuthor() {
 
@@ -710,9 +944,518 @@ public class PostServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @ParameterizedTest
+    @EnumSource(VoteType.class)
+    public void votePost_whenVoteRetractedAndCastAgain_shouldKeepSingleVoteAndScore(VoteType voteType) {
+
+        Post post = postRepo
+                .save(Post.of("subreddit", "another-reddit-user", "title", "body"))
+                .block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Void> vote = tcp().route("vote.post.{postId}.{voteType}", post.getPostId(), voteType)
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .retrieveMono(Void.class);
+
+        Mono<Long> votes = vote
+                .then(vote)
+                .then(vote)
+                .then(Mono.defer(() -> voteRepo.count()));
+
+        StepVerifier
+                .create(votes)
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(postRepo.findById(post.getPostId()))
+                .expectNextMatches(it -> it.getScore() == voteType.getScore())
+                .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @EnumSource(VoteType.class)
+    public void votePost_whenVoteNotFound_shouldIncrementTheStoredScoreByTheVote(VoteType voteType) {
+
+        Post post = Post.of("subreddit", "another-reddit-user", "title", "body");
+        post.setScore(41L);
+        postRepo.save(post).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Post> voted = tcp()
+                .route("vote.post.{postId}.{voteType}", post.getPostId(), voteType)
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveMono(Void.class)
+                .then(Mono.defer(() -> postRepo.findById(post.getPostId())));
+
+        StepVerifier
+                .create(voted)
+                .expectNextMatches(it -> it.getScore() == 41L + voteType.getScore())
+                .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @EnumSource(VoteType.class)
+    public void votePost_whenVoteFlipped_shouldIncrementTheStoredScoreByTwice(VoteType voteType) {
+
+        Post post = Post.of("subreddit", "another-reddit-user", "title", "body");
+        post.setScore(41L);
+        postRepo.save(post).block();
+        voteRepo.save(Vote.of(post.getPostId(), "reddit-user", voteType)).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Post> flipped = tcp()
+                .route("vote.post.{postId}.{voteType}", post.getPostId(), voteType.opposite())
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveMono(Void.class)
+                .then(Mono.defer(() -> postRepo.findById(post.getPostId())));
+
+        StepVerifier
+                .create(flipped)
+                .expectNextMatches(it -> it.getScore() == 41L + 2 * voteType.opposite().getScore())
+                .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @EnumSource(VoteType.class)
+    public void votePost_whenVoteRetracted_shouldOnlyTakeTheVoteOffTheStoredScore(VoteType voteType) {
+
+        Post post = Post.of("subreddit", "another-reddit-user", "title", "body");
+        post.setScore(41L);
+        postRepo.save(post).block();
+        voteRepo.save(Vote.of(post.getPostId(), "reddit-user", voteType)).block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Mono<Post> retracted = tcp()
+                .route("vote.post.{postId}.{voteType}", post.getPostId(), voteType)
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveMono(Void.class)
+                .then(Mono.defer(() -> postRepo.findById(post.getPostId())));
+
+        StepVerifier
+                .create(retracted)
+                .expectNextMatches(it -> it.getScore() == 41L - voteType.getScore())
+                .verifyComplete();
+    }
+
+    @Test
+    public void updateContent_shouldNotOverwriteTheScoreWrittenSinceThePostWasRead() {
+
+        Post post = postRepo
+                .save(Post.of("subreddit", "reddit-user", "title", "body"))
+                .block();
+
+        postRepo.incrementScore(post.getPostId(), 5L).block();
+
+        Mono<Post> updated = postRepo
+                .updateContent(post.editWith(new EditPost("new title", "new body")))
+                .then(Mono.defer(() -> postRepo.findById(post.getPostId())));
+
+        StepVerifier
+                .create(updated)
+                .expectNextMatches(it -> it.getTitle().equals("new title") &&
+                                         it.getBody().equals("new body") &&
+                                         it.getScore() == 5L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void voteIndexMigration_whenVotesAreDuplicated_shouldKeepTheLatestVoteAndCorrectTheScore() {
+
+        Post post = postRepo
+                .save(Post.of("subreddit", "reddit-user", "title", "body"))
+                .block();
+        String postId = post.getPostId();
+
+        mongoOps.indexOps(Vote.class).dropIndex("post_user").block();
+        mongoOps.insert(Vote.of(postId, "user1", VoteType.UPVOTE)).block();
+        mongoOps.insert(Vote.of(postId, "user1", VoteType.DOWNVOTE)).block();
+        mongoOps.insert(Vote.of(postId, "user2", VoteType.UPVOTE)).block();
+        postRepo.incrementScore(postId, 1L).block();
+
+        StepVerifier
+                .create(voteIndexMigration.migrate())
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(voteRepo.findAll().collectMap(Vote::getUsername, Vote::getVoteType))
+                .expectNext(Map.of("user1", VoteType.DOWNVOTE, "user2", VoteType.UPVOTE))
+                .verifyComplete();
+
+        StepVerifier
+                .create(postRepo.findById(postId))
+                .expectNextMatches(it -> it.getScore() == 0L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(mongoOps.indexOps(Vote.class).getIndexInfo()
+                                .filter(index -> index.getName().equals("post_user")))
+                .expectNextMatches(IndexInfo::isUnique)
+                .verifyComplete();
+    }
+
+    @Test
+    public void voteBuffer_whenFlushFails_shouldWriteTheBufferedVotesOnTheNextFlush() {
+
+        Post post = postRepo
+                .save(Post.of("subreddit", "another-reddit-user", "title", "body"))
+                .block();
+
+        ReactiveMongoOperations failingOps = spy(mongoOps);
+        doReturn(Flux.error(new IllegalStateException("read failed"))).doCallRealMethod()
+                .when(failingOps).find(any(Query.class), eq(Vote.class));
+        doReturn(Mono.error(new IllegalStateException("write failed"))).doCallRealMethod()
+                .when(failingOps).getCollection(mongoOps.getCollectionName(Vote.class));
+
+        VoteBuffer buffer = new VoteBuffer(failingOps, postChanges, postScores);
+        ReflectionTestUtils.setField(buffer, "capacity", 10);
+        ReflectionTestUtils.setField(buffer, "flushSize", 10);
+
+        Mono<Void> failed = buffer.add(post.getPostId(), "upvoter", VoteType.UPVOTE)
+                .then(buffer.add(post.getPostId(), "another-upvoter", VoteType.UPVOTE))
+                .then(buffer.flush())
+                .then(buffer.flush());
+
+        StepVerifier
+                .create(failed.then(postRepo.findById(post.getPostId())))
+                .expectNextMatches(it -> it.getScore() == 0L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(buffer.flush().then(postRepo.findById(post.getPostId())))
+                .expectNextMatches(it -> it.getScore() == 2L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(voteRepo.count())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void voteBuffer_whenFullAndFlushFails_shouldBackOffAndThenFailTheVote() {
+
+        ReactiveMongoOperations failingOps = mock(ReactiveMongoOperations.class);
+        when(failingOps.find(any(Query.class), eq(Vote.class)))
+                .thenReturn(Flux.error(new IllegalStateException("read failed")));
+
+        VoteBuffer buffer = new VoteBuffer(failingOps, postChanges, postScores);
+        ReflectionTestUtils.setField(buffer, "capacity", 1);
+        ReflectionTestUtils.setField(buffer, "flushSize", 10);
+        ReflectionTestUtils.setField(buffer, "flushInterval", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(buffer, "fullRetries", 3);
+        ReflectionTestUtils.setField(buffer, "fullBackoff", Duration.ofMillis(10));
+
+        StepVerifier
+                .create(buffer.add("post", "upvoter", VoteType.UPVOTE)
+                                .then(buffer.add("post", "another-upvoter", VoteType.UPVOTE)))
+                .expectErrorMessage("Vote buffer is full")
+                .verify(Duration.ofSeconds(5));
+
+        verify(failingOps, times(4)).find(any(Query.class), eq(Vote.class));
+    }
+
+    @Test
+    public void voteBuffer_whenFlushed_shouldWriteFinalVotesAndMergedScore() {
+
+        Post post = postRepo
+                .save(Post.of("subreddit", "another-reddit-user", "title", "body"))
+                .block();
+
+        voteRepo
+                .save(Vote.of(post.getPostId(), "downvoter", VoteType.DOWNVOTE))
+                .block();
+
+        VoteBuffer buffer = new VoteBuffer(mongoOps, postChanges, postScores);
+        ReflectionTestUtils.setField(buffer, "capacity", 10);
+        ReflectionTestUtils.setField(buffer, "flushSize", 10);
+
+        Mono<Void> flushed = buffer.add(post.getPostId(), "upvoter", VoteType.UPVOTE)
+                .then(buffer.add(post.getPostId(), "retracted", VoteType.UPVOTE))
+                .then(buffer.add(post.getPostId(), "retracted", VoteType.UPVOTE))
+                .then(buffer.add(post.getPostId(), "downvoter", VoteType.UPVOTE))
+                .then(buffer.flush());
+
+        StepVerifier
+                .create(flushed.then(postRepo.findById(post.getPostId())))
+                .expectNextMatches(it -> it.getScore() == 3L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(voteRepo.findVoteByPostIdAndUsername(post.getPostId(), "downvoter"))
+                .expectNextMatches(it -> it.getVoteType() == VoteType.UPVOTE)
+                .verifyComplete();
+
+        StepVerifier
+                .create(voteRepo.findVoteByPostIdAndUsername(post.getPostId(), "retracted"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void streamChanges_whenPostVoted_shouldPublishScoredChange() {
+
+        Post post = postRepo
+                .save(Post.of("subreddit", "another-reddit-user", "title", "body"))
+                .block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Flux<PostChange> changes = tcp()
+                .route("stream.changes")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveFlux(PostChange.class);
+
+        Mono<Void> vote = Mono.delay(Duration.ofMillis(500))
+                .then(tcp()
+                        .route("vote.post.{postId}.{voteType}", post.getPostId(), VoteType.UPVOTE)
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .retrieveMono(Void.class));
+
+        StepVerifier
+                .create(changes.take(1))
+                .then(vote::subscribe)
+                .expectNextMatches(it -> it.getType() == PostChange.Type.SCORED &&
+                                         it.getPostId().equals(post.getPostId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void streamScores_shouldPushTheCurrentAndThenTheVotedScoreOfWatchedPosts() {
+
+        Post post = postRepo
+                .save(Post.of("subreddit", "another-reddit-user", "title", "body"))
+                .block();
+        Post other = postRepo
+                .save(Post.of("subreddit", "another-reddit-user", "title", "body"))
+                .block();
+
+        String token = oAuth2.getAccessTokenForUsername("reddit-user", "password").block();
+
+        Flux<PostScore> scores = tcp()
+                .route("stream.scores")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .data(List.of(post.getPostId()))
+                .retrieveFlux(PostScore.class);
+
+        Mono<Void> vote = Mono.delay(Duration.ofMillis(500))
+                .then(tcp()
+                        .route("vote.post.{postId}.{voteType}", other.getPostId(), VoteType.UPVOTE)
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .retrieveMono(Void.class))
+                .then(tcp()
+                        .route("vote.post.{postId}.{voteType}", post.getPostId(), VoteType.UPVOTE)
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .retrieveMono(Void.class));
+
+        StepVerifier
+                .create(scores.take(2))
+                .then(vote::subscribe)
+                .expectNext(new PostScore(post.getPostId(), post.getScore()))
+                .expectNext(new PostScore(post.getPostId(), post.getScore() + 1))
+                .verifyComplete();
+    }
+
+    @Test
+    public void streamScores_whenScoresArriveOutOfOrder_shouldNotReplaceANewerScoreWithAnOlderOne() {
+
+        PostRepository slowRepo = mock(PostRepository.class);
+        when(slowRepo.findScores(any())).thenReturn(Mono.delay(Duration.ofMillis(300))
+                .thenReturn(scored("post1", 7L, 3L))
+                .flux());
+        PostScores scores = new PostScores(slowRepo, Duration.ofMillis(50));
+
+        StepVerifier
+                .create(scores.stream(List.of("post1")))
+                .then(() -> {
+                    scores.publish(scored("post1", 9L, 5L));
+                    scores.publish(scored("post1", 8L, 4L));
+                })
+                .expectNext(new PostScore("post1", 9L))
+                .expectNoEvent(Duration.ofMillis(500))
+                .then(() -> scores.publish(scored("post1", 10L, 6L)))
+                .expectNext(new PostScore("post1", 10L))
+                .thenCancel()
+                .verify();
+    }
+
+    private static Post scored(String postId, long score, long scoreVersion) {
+        Post post = Post.of("subreddit", "author", "title", "body");
+        post.setPostId(postId);
+        post.setScore(score);
+        post.setScoreVersion(scoreVersion);
+        return post;
+    }
+
+    @Test
+    public void applyCommentActivity_shouldCountCommentsAndSortPostsByLastActivity() {
+
+        Post quiet = postRepo.save(Post.of("test1", "author1", "title1", "body1")).block();
+        Post active = postRepo.save(Post.of("test1", "author2", "title2", "body2")).block();
+        Instant commented = active.getPosted().plusSeconds(60);
+
+        Mono<Void> applied = tcp()
+                .route("apply.comment-activity")
+                .metadata(oAuth2.signServiceClaim("comment-service", Instant.now().plusSeconds(30), "test-secret"))
+                .data(List.of(new CommentActivity(active.getPostId(), 2, commented),
+                              new CommentActivity(quiet.getPostId(), -1, null)))
+                .retrieveMono(Void.class);
+
+        StepVerifier
+                .create(applied.thenMany(tcp()
+                        .route("find.posts.subreddit.{subredditName}", "test1")
+                        .data(PostRequest.builder().sort(PostRequest.SortBy.ACTIVE).build())
+                        .retrieveFlux(Post.class)))
+                .expectNextMatches(it -> it.getPostId().equals(active.getPostId()) &&
+                                         it.getCommentCount() == 2 &&
+                                         it.getLastActivity().equals(commented))
+                .expectNextMatches(it -> it.getPostId().equals(quiet.getPostId()) &&
+                                         it.getCommentCount() == -1 &&
+                                         it.getLastActivity().equals(quiet.getPosted()))
+                .verifyComplete();
+
+        Mono<Long> reconciled = tcp()
+                .route("reconcile.comment-counts")
+                .metadata(oAuth2.signServiceClaim("comment-service", Instant.now().plusSeconds(30), "test-secret"))
+                .data(List.of(new CommentCount(active.getPostId(), 2, commented),
+                              new CommentCount(quiet.getPostId(), 0, quiet.getPosted())))
+                .retrieveMono(Long.class);
+
+        StepVerifier
+                .create(reconciled)
+                .expectNext(1L)
+                .verifyComplete();
+
+        assertThat(postRepo.findById(quiet.getPostId()).block().getCommentCount()).isZero();
+
+        Mono<Void> forged = tcp()
+                .route("apply.comment-activity")
+                .metadata(oAuth2.signUserClaim("reddit-user", Instant.now().plusSeconds(30), "test-secret"))
+                .data(List.of(new CommentActivity(active.getPostId(), 100, null)))
+                .retrieveMono(Void.class);
+
+        StepVerifier
+                .create(forged)
+                .verifyErrorMatches(ex -> ex.getMessage().equals("Access Denied"));
+
+        Mono<Void> namedLikeTheService = tcp()
+                .route("apply.comment-activity")
+                .metadata(oAuth2.signUserClaim("comment-service", Instant.now().plusSeconds(30), "test-secret"))
+                .data(List.of(new CommentActivity(active.getPostId(), 100, null)))
+                .retrieveMono(Void.class);
+
+        StepVerifier
+                .create(namedLikeTheService)
+                .verifyErrorMatches(ex -> ex.getMessage().equals("Access Denied"));
+    }
+
+    @Test
+    public void applyCommentActivity_whenServiceClaimIsForged_shouldReportTheInvalidServiceClaim() {
+
+        Mono<Void> forged = tcp()
+                .route("apply.comment-activity")
+                .metadata(oAuth2.signServiceClaim("comment-service", Instant.now().plusSeconds(30), "wrong-secret"))
+                .data(List.of(new CommentActivity("post1", 1, null)))
+                .retrieveMono(Void.class);
+
+        StepVerifier
+                .create(forged)
+                .verifyErrorMatches(ex -> ex.getMessage().equals("Invalid service claim"));
+    }
+
+    @Test
+    public void userClaimPayloadInterceptor_whenSecretIsBlank_shouldRefuseToBeCreated() {
+
+        assertThatThrownBy(() -> new UserClaimPayloadInterceptor(" "))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("oauth2.user-claims.secret");
+    }
+
+    @Test
+    public void findPostsBySubredditName_whenSortByActiveAfterCursor_shouldPageThroughPostsWithoutLastActivity() {
+
+        Post active = postRepo.save(Post.of("test1", "author1", "title1", "body1")).block();
+        List<String> legacy = Stream.of("title2", "title3")
+                .map(title -> {
+                    Post post = Post.of("test1", "author1", title, "body");
+                    post.setLastActivity(null);
+                    return postRepo.save(post).block().getPostId();
+                })
+                .collect(Collectors.toList());
+
+        List<String> paged = new ArrayList<>();
+        String after = null;
+        for (int page = 0; page < 4; page++) {
+            List<Post> posts = tcp()
+                    .route("find.posts.subreddit.{subredditName}", "test1")
+                    .data(PostRequest.builder().sort(PostRequest.SortBy.ACTIVE).size(1).after(after).build())
+                    .retrieveFlux(Post.class)
+                    .collectList()
+                    .block();
+            if (posts.isEmpty()) {
+                break;
+            }
+            paged.add(posts.get(0).getPostId());
+            after = posts.get(0).getCursor();
+        }
+
+        assertThat(paged).containsExactly(active.getPostId(), legacy.get(1), legacy.get(0));
+    }
+
+    @Test
+    public void jwtDecoder_shouldVerifyEachTokenOnceUntilItExpires() {
+
+        AtomicInteger verifications = new AtomicInteger();
+        CachingJwtDecoder jwtDecoder = new CachingJwtDecoder(token -> {
+            verifications.incrementAndGet();
+            Instant expiresAt = token.equals("expired") ? Instant.now().minusSeconds(1) : Instant.now().plusSeconds(60);
+            return Mono.just(Jwt.withTokenValue(token).header("alg", "RS256").subject(token).expiresAt(expiresAt).build());
+        }, 10);
+
+        StepVerifier
+                .create(Flux.concat(jwtDecoder.decode("valid"), jwtDecoder.decode("valid"),
+                                    jwtDecoder.decode("expired"), jwtDecoder.decode("expired")))
+                .expectNextCount(4)
+                .verifyComplete();
+
+        assertThat(verifications.get()).isEqualTo(3);
+        assertThat(jwtDecoder.stats().getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void jwkSetSource_whenKeysAreInTheLocalFile_shouldVerifyTokensWithoutTheIssuer() throws Exception {
+
+        RSAKey key = new RSAKeyGenerator(2048).keyID("local").generate();
+        Path jwkSetFile = Files.createTempFile("jwks", ".json");
+        Files.writeString(jwkSetFile, new JWKSet(key).toString());
+
+        JwkSetSource jwkSource = new JwkSetSource(WebClient.create(), "http://localhost:1/auth/realms/offline",
+                                                  jwkSetFile, Duration.ofMinutes(5), Duration.ofSeconds(10));
+        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSource).build();
+
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("local").build(),
+                                      new JWTClaimsSet.Builder()
+                                              .subject("reddit-user")
+                                              .expirationTime(Date.from(Instant.now().plusSeconds(60)))
+                                              .build());
+        jwt.sign(new RSASSASigner(key));
+
+        StepVerifier
+                .create(jwtDecoder.decode(jwt.serialize()))
+                .expectNextMatches(it -> it.getSubject().equals("reddit-user"))
+                .verifyComplete();
+    }
+
     @TestConfiguration
     public static class OAuth2 {
 
+        private static final MimeType AUTHENTICATION_MIME_TYPE =
+                MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString());
+
         @Autowired
         private ReactiveClientRegistrationRepository clients;
 
@@ -728,9 +1471,34 @@ public class PostServiceApplicationTests {
         }
 
         private Consumer<RSocketRequester.MetadataSpec<?>> addTokenToMetadata(String token) {
-            MimeType mimeType = MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString());
             BearerTokenMetadata bearerTokenMetadata = new BearerTokenMetadata(token);
-            return spec -> spec.metadata(bearerTokenMetadata, mimeType);
+            return spec -> spec.metadata(bearerTokenMetadata, AUTHENTICATION_MIME_TYPE);
+        }
+
+        private Consumer<RSocketRequester.MetadataSpec<?>> signUserClaim(String username, Instant expiresAt,
+                                                                         String secret) {
+            return signClaim(username, expiresAt, secret, "", UserClaimPayloadInterceptor.USER_CLAIM_MIME_TYPE);
+        }
+
+        private Consumer<RSocketRequester.MetadataSpec<?>> signServiceClaim(String service, Instant expiresAt,
+                                                                            String secret) {
+            return signClaim(service, expiresAt, secret, "service.", UserClaimPayloadInterceptor.SERVICE_CLAIM_MIME_TYPE);
+        }
+
+        private Consumer<RSocketRequester.MetadataSpec<?>> signClaim(String name, Instant expiresAt, String secret,
+                                                                     String prefix, String mimeTypeValue) {
+            String content = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(name.getBytes(StandardCharsets.UTF_8)) + "." + expiresAt.getEpochSecond();
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+                String signature = Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString(mac.doFinal((prefix + content).getBytes(StandardCharsets.UTF_8)));
+                MimeType mimeType = MimeTypeUtils.parseMimeType(mimeTypeValue);
+                return spec -> spec.metadata(content + "." + signature, mimeType);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            }
         }
     }
 }
@@ -8,7 +8,9 @@ public interface CacheableRequest {
 
     SortBy getSort();
 
+    String getAfter();
+
     default String toCacheKey() {
-        return String.format("%d_%d_%s", getPage(), getSize(), getSort());
+        return String.format("%d_%d_%s_%s", getPage(), getSize(), getSort(), getAfter());
     }
 }
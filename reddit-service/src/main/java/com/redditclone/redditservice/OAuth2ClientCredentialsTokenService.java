@@ -1,47 +1,146 @@
 package com.redditclone.redditservice;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest;
+import org.springframework.security.oauth2.client.endpoint.ReactiveOAuth2AccessTokenResponseClient;
 import org.springframework.security.oauth2.client.endpoint.WebClientReactiveClientCredentialsTokenResponseClient;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
 import org.springframework.stereotype.Service;
-import reactor.cache.CacheMono;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Client credentials tokens per client registration. A token is used until its {@code expires_in} runs out
+ * and is refreshed in the background once less than {@code refresh-ahead} of it is left, with one fetch per
+ * registration at a time. If a refresh fails, the current token is used for as long as it is still valid, and
+ * the next background refresh waits for {@code refresh-retry-delay}.
+ */
+@Slf4j
 @Service
 public class OAuth2ClientCredentialsTokenService implements OAuth2TokenService {
 
     private final ReactiveClientRegistrationRepository clientRepository;
-    private final Cache<String, Object> tokenCache;
+    private final ReactiveOAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenClient;
+    private final Duration refreshAhead;
+    private final Duration refreshRetryDelay;
+    private final Duration defaultLifetime;
+    private final Map<String, ManagedToken> tokens = new ConcurrentHashMap<>();
 
     @Value("${oauth2.client.registration-id}")
     private String clientRegistrationId;
 
-    public OAuth2ClientCredentialsTokenService(ReactiveClientRegistrationRepository clientRepository) {
+    @Autowired
+    public OAuth2ClientCredentialsTokenService(ReactiveClientRegistrationRepository clientRepository,
+                                               @Value("${oauth2.client.refresh-ahead:30s}") Duration refreshAhead,
+                                               @Value("${oauth2.client.refresh-retry-delay:5s}") Duration refreshRetryDelay,
+                                               @Value("${oauth2.client.default-lifetime:1m}") Duration defaultLifetime) {
+        this(clientRepository, new WebClientReactiveClientCredentialsTokenResponseClient(),
+                refreshAhead, refreshRetryDelay, defaultLifetime);
+    }
+
+    OAuth2ClientCredentialsTokenService(ReactiveClientRegistrationRepository clientRepository,
+                                        ReactiveOAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenClient,
+                                        Duration refreshAhead,
+                                        Duration refreshRetryDelay,
+                                        Duration defaultLifetime) {
         this.clientRepository = clientRepository;
-        this.tokenCache = Caffeine
-                .newBuilder()
-                .expireAfterWrite(Duration.ofMinutes(1))
-                .build();
+        this.tokenClient = tokenClient;
+        this.refreshAhead = refreshAhead;
+        this.refreshRetryDelay = refreshRetryDelay;
+        this.defaultLifetime = defaultLifetime;
     }
 
     @Override
     public Mono<String> getToken() {
-        var client = new WebClientReactiveClientCredentialsTokenResponseClient();
-        return CacheMono
-                .lookup(tokenCache.asMap(), "token", String.class)
-                .onCacheMissResume(() -> clientRepository
+        return getToken(clientRegistrationId);
+    }
+
+    @Override
+    public Mono<String> getToken(String clientRegistrationId) {
+        return tokens
+                .computeIfAbsent(clientRegistrationId, ManagedToken::new)
+                .get()
+                .map(OAuth2AccessToken::getTokenValue);
+    }
+
+    private class ManagedToken {
+
+        private final String clientRegistrationId;
+        private final AtomicReference<Mono<OAuth2AccessToken>> inFlight = new AtomicReference<>();
+        private volatile OAuth2AccessToken current;
+        private volatile Instant refreshFailed;
+
+        ManagedToken(String clientRegistrationId) {
+            this.clientRegistrationId = clientRegistrationId;
+        }
+
+        Mono<OAuth2AccessToken> get() {
+            return Mono.defer(() -> {
+                OAuth2AccessToken token = current;
+                if (token == null || !isValid(token)) {
+                    return fetch();
+                }
+                if (Instant.now().isAfter(expiresAt(token).minus(refreshAhead)) && !isRetryDelayed()) {
+                    fetch().subscribe(
+                            refreshed -> log.debug("Refreshed the token of client {}", clientRegistrationId),
+                            ex -> {
+                                refreshFailed = Instant.now();
+                                log.warn("Refreshing the token of client {} failed, using the current one until it expires",
+                                        clientRegistrationId, ex);
+                            });
+                }
+                return Mono.just(token);
+            });
+        }
+
+        private Mono<OAuth2AccessToken> fetch() {
+            while (true) {
+                Mono<OAuth2AccessToken> pending = inFlight.get();
+                if (pending != null) {
+                    return pending;
+                }
+                AtomicReference<Mono<OAuth2AccessToken>> self = new AtomicReference<>();
+                Mono<OAuth2AccessToken> fetch = clientRepository
                         .findByRegistrationId(clientRegistrationId)
                         .map(OAuth2ClientCredentialsGrantRequest::new)
-                        .flatMap(client::getTokenResponse)
+                        .flatMap(tokenClient::getTokenResponse)
                         .map(OAuth2AccessTokenResponse::getAccessToken)
-                        .map(OAuth2AccessToken::getTokenValue));
-    }
+                        .doOnNext(token -> {
+                            current = token;
+                            refreshFailed = null;
+                        })
+                        .doFinally(signal -> inFlight.compareAndSet(self.get(), null))
+                        .cache();
+                self.set(fetch);
+                if (inFlight.compareAndSet(null, fetch)) {
+                    return fetch;
+                }
+            }
+        }
 
+        private boolean isRetryDelayed() {
+            Instant failed = refreshFailed;
+            return failed != null && Instant.now().isBefore(failed.plus(refreshRetryDelay));
+        }
+
+        private boolean isValid(OAuth2AccessToken token) {
+            return Instant.now().isBefore(expiresAt(token));
+        }
+
+        private Instant expiresAt(OAuth2AccessToken token) {
+            if (token.getExpiresAt() != null) {
+                return token.getExpiresAt();
+            }
+            return (token.getIssuedAt() != null ? token.getIssuedAt() : Instant.EPOCH).plus(defaultLifetime);
+        }
+    }
 }
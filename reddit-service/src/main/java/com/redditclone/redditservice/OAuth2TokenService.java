@@ -5,4 +5,6 @@ import reactor.core.publisher.Mono;
 public interface OAuth2TokenService {
 
     Mono<String> getToken();
+
+    Mono<String> getToken(String clientRegistrationId);
 }
@@ -1,6 +1,9 @@
 package com.redditclone.redditservice;
 
+/**
+ * The sorts of listed posts, subreddits and comments. {@code HOT} and {@code ACTIVE} rank posts only.
+ */
 public enum SortBy {
 
-    NEW, OLD, TOP
+    NEW, OLD, TOP, HOT, ACTIVE
 }
@@ -0,0 +1,27 @@
+package com.redditclone.redditservice.cache;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Duration;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CacheProperties {
+
+    /**
+     * Age after which a value is still served but refreshed in the background.
+     */
+    Duration softTtl = Duration.ofMinutes(1);
+    /**
+     * Age after which a value is evicted and the next request waits for the backend.
+     */
+    Duration hardTtl = Duration.ofMinutes(10);
+    /**
+     * Total weight of the cache, where a single item weighs 1 and a list weighs its size.
+     */
+    long maximumWeight = 10_000L;
+    int maxRefreshesPerSecond = 50;
+
+}
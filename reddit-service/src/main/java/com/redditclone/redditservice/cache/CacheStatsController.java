@@ -0,0 +1,21 @@
+package com.redditclone.redditservice.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/caches")
+public class CacheStatsController {
+
+    private final ReactiveCaches caches;
+
+    @GetMapping("/stats")
+    public Map<String, ReactiveCacheStats> stats() {
+        return caches.stats();
+    }
+}
@@ -0,0 +1,202 @@
+package com.redditclone.redditservice.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Stale-while-revalidate cache over a Caffeine {@link AsyncCache}. Values older than the soft TTL are served
+ * as is while one background load per key replaces them, at most {@code maxRefreshesPerSecond} at a time.
+ * Values older than the hard TTL are evicted. Concurrent misses of a key share the pending load.
+ * <p>
+ * Invalidating a key also fences the refreshes of that key already in flight: a refresh only replaces the
+ * entry if no invalidation of its key happened since it started. Generations are striped by key hash, so an
+ * invalidation may also fence a refresh of an unrelated key, which is then simply loaded again later.
+ */
+@Slf4j
+public class ReactiveCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final String name;
+    private final AsyncCache<String, CacheEntry> cache;
+    private final long softTtlNanos;
+    private final int maxRefreshesPerSecond;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong refreshWindow = new AtomicLong();
+    private final AtomicInteger refreshesInWindow = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public ReactiveCache(String name, CacheProperties properties) {
+        this.name = name;
+        this.softTtlNanos = properties.getSoftTtl().toNanos();
+        this.maxRefreshesPerSecond = properties.getMaxRefreshesPerSecond();
+        this.cache = Caffeine
+                .newBuilder()
+                .maximumWeight(properties.getMaximumWeight())
+                .weigher((String key, CacheEntry entry) -> entry.weight())
+                .expireAfterWrite(properties.getHardTtl())
+                .recordStats()
+                .buildAsync();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> mono(String key, Supplier<Mono<T>> loader) {
+        return Mono.defer(() -> {
+            CompletableFuture<CacheEntry> cached = cache.getIfPresent(key);
+            if (cached != null && cached.isDone() && !cached.isCompletedExceptionally()) {
+                CacheEntry entry = cached.join();
+                if (entry.isStale(softTtlNanos)) {
+                    staleHits.increment();
+                    refresh(key, loader);
+                } else {
+                    hits.increment();
+                }
+                return Mono.just((T) entry.getValue());
+            }
+            if (cached != null) {
+                coalesced.increment();
+            } else {
+                misses.increment();
+            }
+            // a dependent stage, so a cancelled subscriber does not cancel the load shared with other callers
+            return Mono.fromFuture(cache
+                    .get(key, (k, executor) -> load(loader))
+                    .thenApply(entry -> entry == null ? null : (T) entry.getValue()));
+        });
+    }
+
+    public <T> Flux<T> flux(String key, Supplier<Flux<T>> loader) {
+        return this.<List<T>>mono(key, () -> loader.get().collectList())
+                .flatMapIterable(items -> items);
+    }
+
+    public void invalidate(String key) {
+        fence(key);
+        cache.synchronous().invalidate(key);
+    }
+
+    /**
+     * Evicts every loaded entry whose key and value match, e.g. the list pages that contain a changed item.
+     * Pending loads cannot be matched yet and are evicted too, as they may have read the data before the change.
+     */
+    public void invalidateIf(BiPredicate<String, Object> predicate) {
+        cache.asMap().entrySet().removeIf(entry -> {
+            CompletableFuture<CacheEntry> future = entry.getValue();
+            if (future.isDone()) {
+                CacheEntry loaded = future.isCompletedExceptionally() ? null : future.join();
+                if (loaded == null || !predicate.test(entry.getKey(), loaded.getValue())) {
+                    return false;
+                }
+            }
+            fence(entry.getKey());
+            return true;
+        });
+    }
+
+    public void invalidateAll() {
+        for (int stripe = 0; stripe < GENERATION_STRIPES; stripe++) {
+            generations.incrementAndGet(stripe);
+        }
+        cache.synchronous().invalidateAll();
+    }
+
+    public ReactiveCacheStats toStats() {
+        return new ReactiveCacheStats(
+                cache.synchronous().estimatedSize(),
+                hits.sum(),
+                staleHits.sum(),
+                misses.sum(),
+                coalesced.sum(),
+                loads.sum(),
+                refreshes.sum(),
+                cache.synchronous().stats().evictionCount());
+    }
+
+    private <T> CompletableFuture<CacheEntry> load(Supplier<Mono<T>> loader) {
+        loads.increment();
+        // an empty result completes with null, which the cache does not keep
+        return loader.get()
+                .map(value -> new CacheEntry(value, System.nanoTime()))
+                .toFuture();
+    }
+
+    private <T> void refresh(String key, Supplier<Mono<T>> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        if (!tryAcquireRefresh()) {
+            refreshing.remove(key);
+            return;
+        }
+        refreshes.increment();
+        long generation = generations.get(stripe(key));
+        loader.get()
+                .map(value -> new CacheEntry(value, System.nanoTime()))
+                .doFinally(signal -> refreshing.remove(key))
+                .subscribe(
+                        entry -> putIfNotInvalidated(key, generation, entry),
+                        ex -> log.warn("Refreshing {} in cache {} failed, serving the stale value", key, name, ex));
+    }
+
+    // the generation is compared inside compute, so an invalidation either fences the put or evicts its entry
+    private void putIfNotInvalidated(String key, long generation, CacheEntry entry) {
+        cache.asMap().compute(key, (k, existing) -> generations.get(stripe(k)) == generation
+                ? CompletableFuture.completedFuture(entry)
+                : existing);
+    }
+
+    private void fence(String key) {
+        generations.incrementAndGet(stripe(key));
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), GENERATION_STRIPES);
+    }
+
+    private boolean tryAcquireRefresh() {
+        long window = System.nanoTime() / Duration.ofSeconds(1).toNanos();
+        long current = refreshWindow.get();
+        if (window != current && refreshWindow.compareAndSet(current, window)) {
+            refreshesInWindow.set(0);
+        }
+        return refreshesInWindow.incrementAndGet() <= maxRefreshesPerSecond;
+    }
+
+    @Value
+    static class CacheEntry {
+
+        Object value;
+        long loaded;
+
+        boolean isStale(long softTtlNanos) {
+            return System.nanoTime() - loaded > softTtlNanos;
+        }
+
+        int weight() {
+            return value instanceof Collection ? Math.max(1, ((Collection<?>) value).size()) : 1;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.redditclone.redditservice.cache;
+
+import lombok.Value;
+
+@Value
+public class ReactiveCacheStats {
+
+    long size;
+    long hits;
+    long staleHits;
+    long misses;
+    long coalesced;
+    long loads;
+    long refreshes;
+    long evictions;
+
+}
@@ -0,0 +1,35 @@
+package com.redditclone.redditservice.cache;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Creates one {@link ReactiveCache} per name, configured under {@code caches.<name>}.
+ */
+@Component
+public class ReactiveCaches {
+
+    private final Binder binder;
+    private final Map<String, ReactiveCache> caches = new ConcurrentHashMap<>();
+
+    public ReactiveCaches(Environment environment) {
+        this.binder = Binder.get(environment);
+    }
+
+    public ReactiveCache forCache(String cacheName) {
+        return caches.computeIfAbsent(cacheName, name -> new ReactiveCache(name, binder
+                .bind("caches." + name, CacheProperties.class)
+                .orElseGet(CacheProperties::new)));
+    }
+
+    public Map<String, ReactiveCacheStats> stats() {
+        return new TreeMap<>(caches.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().toStats())));
+    }
+}
@@ -25,5 +25,7 @@ public class Comment {
     Instant edited;
     boolean deleted;
     List<Comment> children;
+    String continuation;
+    String cursor;
 
 }
@@ -0,0 +1,26 @@
+package com.redditclone.redditservice.comment;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommentChange {
+
+    Type type;
+    String commentId;
+    String postId;
+    String author;
+    List<String> ancestorIds;
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, SCORED
+    }
+}
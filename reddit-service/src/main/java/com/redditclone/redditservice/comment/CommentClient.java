@@ -8,8 +8,14 @@ public interface CommentClient {
 
     Flux<Comment> findCommentsByPostId(String postId, CommentRequest request);
 
+    Mono<Comment> findCommentSubtree(String commentId, CommentRequest request);
+
+    Mono<Comment> findCommentContinuation(String continuation, CommentRequest request);
+
     Flux<Comment> findCommentsByUsername(String username, CommentRequest request);
 
+    Flux<CommentDelta> streamCommentsByPostId(String postId);
+
     Mono<Comment> createComment(String username, CreateComment create);
 
     Mono<Comment> editComment(String commentId, String username, EditComment edit);
@@ -2,6 +2,7 @@ package com.redditclone.redditservice.comment;
 
 import com.redditclone.redditservice.VoteType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
@@ -21,12 +22,29 @@ public class CommentController {
         return commentClient.findCommentsByPostId("", request);
     }
 
+    @GetMapping("/{commentId}/subtree")
+    public Mono<Comment> findCommentSubtree(@PathVariable String commentId,
+                                            CommentRequest request) {
+        return commentClient.findCommentSubtree(commentId, request);
+    }
+
+    @GetMapping("/continuations/{continuation}")
+    public Mono<Comment> findCommentContinuation(@PathVariable String continuation,
+                                                 CommentRequest request) {
+        return commentClient.findCommentContinuation(continuation, request);
+    }
+
     @GetMapping
     public Flux<Comment> findCommentsByUsername(CommentRequest request) {
         // FIXME
         return commentClient.findCommentsByUsername("", request);
     }
 
+    @GetMapping(path = "/post/{postId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<CommentDelta> streamCommentsByPostId(@PathVariable String postId) {
+        return commentClient.streamCommentsByPostId(postId);
+    }
+
     @PostMapping
     public Mono<Comment> createComment(@AuthenticationPrincipal Jwt jwt,
                                        @RequestBody CreateComment create) {
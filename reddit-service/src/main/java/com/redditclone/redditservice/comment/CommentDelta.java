@@ -0,0 +1,17 @@
+package com.redditclone.redditservice.comment;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommentDelta {
+
+    CommentChange.Type type;
+    Comment comment;
+}
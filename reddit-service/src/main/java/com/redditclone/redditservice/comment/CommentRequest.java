@@ -17,5 +17,12 @@ public class CommentRequest implements CacheableRequest {
     Integer page;
     Integer size;
     SortBy sort;
+    Integer maxDepth;
+    Integer maxNodes;
+    String after;
 
+    @Override
+    public String toCacheKey() {
+        return String.format("%s_%d_%d", CacheableRequest.super.toCacheKey(), maxDepth, maxNodes);
+    }
 }
@@ -1,40 +1,180 @@
 package com.redditclone.redditservice.comment;
 
 import com.redditclone.redditservice.VoteType;
+import com.redditclone.redditservice.cache.ReactiveCache;
+import com.redditclone.redditservice.cache.ReactiveCaches;
+import com.redditclone.redditservice.event.EventBus;
+import com.redditclone.redditservice.routing.BackendAuthentication;
+import com.redditclone.redditservice.routing.BackendRequesters;
+import com.redditclone.redditservice.routing.LoadBalancedRequester;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
 @Component
 public class DefaultCommentClient implements CommentClient {
 
+    private final BackendAuthentication authentication;
+    private final EventBus eventBus;
+    private final LoadBalancedRequester requester;
+    private final ReactiveCache commentCache;
+    private Disposable changes;
+
+    public DefaultCommentClient(BackendAuthentication authentication,
+                                BackendRequesters requesters,
+                                ReactiveCaches caches,
+                                EventBus eventBus) {
+        this.authentication = authentication;
+        this.eventBus = eventBus;
+        this.requester = requesters.forRoute("comment-service");
+        this.commentCache = caches.forCache("comments");
+    }
+
+    @PostConstruct
+    public void listenForChanges() {
+        changes = requester
+                .broadcast(target -> authentication.service()
+                                .flatMapMany(metadata -> target
+                                        .route("stream.changes")
+                                        .metadata(metadata)
+                                        .retrieveFlux(CommentChange.class)),
+                        // changes may have been missed while not subscribed
+                        commentCache::invalidateAll)
+                .doOnNext(eventBus::publish)
+                .subscribe(this::evict);
+    }
+
+    @PreDestroy
+    public void stopListening() {
+        changes.dispose();
+    }
+
+    private void evict(CommentChange change) {
+        if (change.getType() == CommentChange.Type.CREATED) {
+            // a new comment shows up in the trees of its post and the subtrees of its ancestors
+            Set<String> ancestorIds = Set.copyOf(change.getAncestorIds());
+            commentCache.invalidateIf((key, value) -> key.startsWith(postKeyPrefix(change.getPostId())) ||
+                                                      key.startsWith(userKeyPrefix(change.getAuthor())) ||
+                                                      containsAny(value, ancestorIds));
+        } else {
+            Set<String> commentIds = Set.of(change.getCommentId());
+            commentCache.invalidateIf((key, value) -> containsAny(value, commentIds));
+        }
+    }
+
+    private static boolean containsAny(Object value, Set<String> commentIds) {
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).stream().anyMatch(it -> containsAny(it, commentIds));
+        }
+        Comment comment = (Comment) value;
+        return commentIds.contains(comment.getCommentId()) ||
+               (comment.getChildren() != null && containsAny(comment.getChildren(), commentIds));
+    }
+
+    private static String postKeyPrefix(String postId) {
+        return "post_" + postId + "_";
+    }
+
+    private static String userKeyPrefix(String username) {
+        return "user_" + username + "_";
+    }
+
     @Override
     public Flux<Comment> findCommentsByPostId(String postId, CommentRequest request) {
-        return Flux.empty();
+        String key = postKeyPrefix(postId) + request.toCacheKey();
+        return commentCache.flux(key, () -> authentication.service()
+                .flatMapMany(metadata -> requester.flux(target -> target
+                        .route("find.comments.post.{postId}.flat", postId)
+                        .metadata(metadata)
+                        .data(request)
+                        .retrieveMono(FlatCommentTree.class)
+                        .flatMapIterable(FlatCommentTree::toComments))));
+    }
+
+    @Override
+    public Mono<Comment> findCommentSubtree(String commentId, CommentRequest request) {
+        String key = String.format("subtree_%s_%s", commentId, request.toCacheKey());
+        return commentCache.mono(key, () -> authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("find.comments.subtree.{commentId}", commentId)
+                        .metadata(metadata)
+                        .data(request)
+                        .retrieveMono(Comment.class))));
+    }
+
+    @Override
+    public Mono<Comment> findCommentContinuation(String continuation, CommentRequest request) {
+        String key = String.format("continuation_%s_%s", continuation, request.toCacheKey());
+        return commentCache.mono(key, () -> authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("find.comments.continuation.{continuation}", continuation)
+                        .metadata(metadata)
+                        .data(request)
+                        .retrieveMono(Comment.class))));
     }
 
     @Override
     public Flux<Comment> findCommentsByUsername(String username, CommentRequest request) {
-        return Flux.empty();
+        String key = userKeyPrefix(username) + request.toCacheKey();
+        return commentCache.flux(key, () -> authentication.service()
+                .flatMapMany(metadata -> requester.flux(target -> target
+                        .route("find.comments.user.{username}", username)
+                        .metadata(metadata)
+                        .data(request)
+                        .retrieveFlux(Comment.class))));
+    }
+
+    @Override
+    public Flux<CommentDelta> streamCommentsByPostId(String postId) {
+        return authentication.service()
+                .flatMapMany(metadata -> requester.flux(target -> target
+                        .route("stream.comments.post.{postId}", postId)
+                        .metadata(metadata)
+                        .retrieveFlux(CommentDelta.class)));
     }
 
     @Override
     public Mono<Comment> createComment(String username, CreateComment create) {
-        return Mono.empty();
+        return authentication.user(username)
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("create.comment")
+                        .metadata(metadata)
+                        .data(create)
+                        .retrieveMono(Comment.class)));
     }
 
     @Override
     public Mono<Comment> editComment(String commentId, String username, EditComment edit) {
-        return Mono.empty();
+        return authentication.user(username)
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("edit.comment.{commentId}", commentId)
+                        .metadata(metadata)
+                        .data(edit)
+                        .retrieveMono(Comment.class)));
     }
 
     @Override
     public Mono<Void> deleteComment(String commentId, String username) {
-        return Mono.empty();
+        return authentication.user(username)
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("delete.comment.{commentId}", commentId)
+                        .metadata(metadata)
+                        .retrieveMono(Void.class)));
     }
 
     @Override
     public Mono<Void> voteComment(String commentId, VoteType voteType, String username) {
-        return Mono.empty();
+        return authentication.user(username)
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("vote.comment.{commentId}.{voteType}", commentId, voteType)
+                        .metadata(metadata)
+                        .retrieveMono(Void.class)));
     }
 }
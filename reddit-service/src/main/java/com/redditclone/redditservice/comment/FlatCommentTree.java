@@ -0,0 +1,77 @@
+package com.redditclone.redditservice.comment;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The comment trees of a post page as comment-service sends them on {@code find.comments.post.{postId}.flat}:
+ * nodes in pre-order, each with the index of its parent or -1 for the roots, encoded as arrays.
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@AllArgsConstructor
+@NoArgsConstructor
+public class FlatCommentTree {
+
+    String postId;
+    List<Node> nodes;
+
+    public List<Comment> toComments() {
+        List<Comment> roots = new ArrayList<>();
+        List<Comment> comments = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            Comment parent = node.getParent() < 0 ? null : comments.get(node.getParent());
+            Comment comment = new Comment(
+                    node.getCommentId(),
+                    postId,
+                    parent == null ? null : parent.getCommentId(),
+                    node.getAuthor(),
+                    node.getBody(),
+                    node.getScore(),
+                    node.getCommented(),
+                    node.getEdited(),
+                    node.isDeleted(),
+                    new ArrayList<>(),
+                    node.getContinuation(),
+                    node.getCursor());
+            comments.add(comment);
+            if (parent == null) {
+                roots.add(comment);
+            } else {
+                parent.getChildren().add(comment);
+            }
+        }
+        return roots;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"parent", "depth", "commentId", "author", "body", "score", "commented", "edited",
+            "deleted", "continuation", "cursor"})
+    public static class Node {
+
+        int parent;
+        int depth;
+        String commentId;
+        String author;
+        String body;
+        Long score;
+        Instant commented;
+        Instant edited;
+        boolean deleted;
+        String continuation;
+        String cursor;
+    }
+}
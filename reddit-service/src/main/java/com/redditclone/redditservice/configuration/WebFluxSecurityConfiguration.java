@@ -1,5 +1,6 @@
 package com.redditclone.redditservice.configuration;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
@@ -9,10 +10,13 @@ import org.springframework.security.web.server.SecurityWebFilterChain;
 public class WebFluxSecurityConfiguration {
 
     @Bean
-    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                  @Value("${oauth2.admin-authority:SCOPE_admin}") String adminAuthority) {
         return http
                 .csrf().disable()
                 .authorizeExchange()
+                // backend addresses, failures, cache and event statistics are not for anonymous users
+                .pathMatchers("/api/v1/routes/**", "/api/v1/caches/**", "/api/v1/events/**").hasAuthority(adminAuthority)
                 .pathMatchers("/api/v1/**").permitAll()
                 .and().oauth2Client()
                 .and().oauth2ResourceServer().jwt()
@@ -0,0 +1,82 @@
+package com.redditclone.redditservice.event;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process fan out of live updates. New subscribers are replayed at most the last {@code events.replay.history-size}
+ * events, skipping those older than {@code events.replay.max-age}, and every subscriber gets its own bounded
+ * buffer whose overflow strategy it chooses, so neither the history nor a slow subscriber can grow without bound.
+ */
+@Component
+public class EventBus {
+
+    private final Sinks.Many<PublishedEvent> sink;
+    private final int historySize;
+    private final Duration maxAge;
+    private final int bufferSize;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong buffered = new AtomicLong();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public EventBus(@Value("${events.replay.history-size:256}") int historySize,
+                    @Value("${events.replay.max-age:1m}") Duration maxAge,
+                    @Value("${events.subscriber.buffer-size:256}") int bufferSize) {
+        // the replay sink is only bounded by count, the age is checked when replaying
+        this.sink = Sinks.many().replay().limit(historySize);
+        this.historySize = historySize;
+        this.maxAge = maxAge;
+        this.bufferSize = bufferSize;
+    }
+
+    public void publish(Object event) {
+        published.increment();
+        sink.emitNext(new PublishedEvent(Instant.now(), event),
+                      (signalType, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+
+    public <T> Flux<T> subscribe(Class<T> type, BufferOverflowStrategy overflowStrategy) {
+        return Flux.defer(() -> {
+            Instant replayedSince = Instant.now().minus(maxAge);
+            AtomicLong pending = new AtomicLong();
+            return sink.asFlux()
+                    .filter(event -> event.getPublished().isAfter(replayedSince))
+                    .map(PublishedEvent::getPayload)
+                    .ofType(type)
+                    .doOnNext(event -> {
+                        pending.incrementAndGet();
+                        buffered.incrementAndGet();
+                    })
+                    .onBackpressureBuffer(bufferSize, event -> {
+                        pending.decrementAndGet();
+                        buffered.decrementAndGet();
+                        dropped.increment();
+                    }, overflowStrategy)
+                    .doOnNext(event -> {
+                        pending.decrementAndGet();
+                        buffered.decrementAndGet();
+                    })
+                    .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                    .doFinally(signal -> {
+                        subscribers.decrementAndGet();
+                        buffered.addAndGet(-pending.get());
+                    });
+        });
+    }
+
+    public EventBusStats stats() {
+        long publishedCount = published.sum();
+        return new EventBusStats(subscribers.get(), publishedCount, dropped.sum(),
+                                 Math.min(publishedCount, historySize), buffered.get());
+    }
+}
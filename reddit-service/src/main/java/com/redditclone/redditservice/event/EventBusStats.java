@@ -0,0 +1,14 @@
+package com.redditclone.redditservice.event;
+
+import lombok.Value;
+
+@Value
+public class EventBusStats {
+
+    int subscribers;
+    long published;
+    long dropped;
+    long replayable;
+    long buffered;
+
+}
@@ -0,0 +1,19 @@
+package com.redditclone.redditservice.event;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/events")
+public class EventBusStatsController {
+
+    private final EventBus eventBus;
+
+    @GetMapping("/stats")
+    public EventBusStats stats() {
+        return eventBus.stats();
+    }
+}
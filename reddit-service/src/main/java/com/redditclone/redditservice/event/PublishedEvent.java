@@ -0,0 +1,13 @@
+package com.redditclone.redditservice.event;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+class PublishedEvent {
+
+    Instant published;
+    Object payload;
+
+}
@@ -0,0 +1,23 @@
+package com.redditclone.redditservice.page;
+
+import com.redditclone.redditservice.comment.CommentRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/pages")
+public class PageController {
+
+    private final PostPageComposer postPageComposer;
+
+    @GetMapping("/post/{postId}")
+    public Mono<PostPage> findPostPage(@PathVariable String postId,
+                                       CommentRequest request) {
+        return postPageComposer.composePostPage(postId, request);
+    }
+}
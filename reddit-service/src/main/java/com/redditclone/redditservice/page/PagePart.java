@@ -0,0 +1,12 @@
+package com.redditclone.redditservice.page;
+
+import lombok.Value;
+
+@Value
+class PagePart<T> {
+
+    String name;
+    T value;
+    boolean degraded;
+
+}
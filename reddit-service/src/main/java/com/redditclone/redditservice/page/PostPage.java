@@ -0,0 +1,23 @@
+package com.redditclone.redditservice.page;
+
+import com.redditclone.redditservice.comment.Comment;
+import com.redditclone.redditservice.post.Post;
+import com.redditclone.redditservice.subreddit.Subreddit;
+import com.redditclone.redditservice.user.UserProfile;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Everything a post page renders. Parts that failed or timed out are {@code null} and named in {@code degraded}.
+ */
+@Value
+public class PostPage {
+
+    Post post;
+    List<Comment> comments;
+    Subreddit subreddit;
+    UserProfile author;
+    List<String> degraded;
+
+}
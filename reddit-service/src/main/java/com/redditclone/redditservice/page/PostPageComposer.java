@@ -0,0 +1,95 @@
+package com.redditclone.redditservice.page;
+
+import com.redditclone.redditservice.comment.Comment;
+import com.redditclone.redditservice.comment.CommentClient;
+import com.redditclone.redditservice.comment.CommentRequest;
+import com.redditclone.redditservice.post.Post;
+import com.redditclone.redditservice.post.PostClient;
+import com.redditclone.redditservice.subreddit.Subreddit;
+import com.redditclone.redditservice.subreddit.SubredditClient;
+import com.redditclone.redditservice.user.UserClient;
+import com.redditclone.redditservice.user.UserProfile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple3;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Fetches the parts of a post page concurrently. The comments are requested alongside the post, the sidebar and
+ * the author as soon as the post names them. Only the post itself is required, any other part that fails or
+ * exceeds its timeout is left out and reported as degraded.
+ */
+@Slf4j
+@Component
+public class PostPageComposer {
+
+    private final PostClient postClient;
+    private final CommentClient commentClient;
+    private final SubredditClient subredditClient;
+    private final UserClient userClient;
+    private final Duration postTimeout;
+    private final Duration commentsTimeout;
+    private final Duration subredditTimeout;
+    private final Duration authorTimeout;
+
+    public PostPageComposer(PostClient postClient,
+                            CommentClient commentClient,
+                            SubredditClient subredditClient,
+                            UserClient userClient,
+                            @Value("${pages.post.post-timeout:2s}") Duration postTimeout,
+                            @Value("${pages.post.comments-timeout:1s}") Duration commentsTimeout,
+                            @Value("${pages.post.subreddit-timeout:500ms}") Duration subredditTimeout,
+                            @Value("${pages.post.author-timeout:500ms}") Duration authorTimeout) {
+        this.postClient = postClient;
+        this.commentClient = commentClient;
+        this.subredditClient = subredditClient;
+        this.userClient = userClient;
+        this.postTimeout = postTimeout;
+        this.commentsTimeout = commentsTimeout;
+        this.subredditTimeout = subredditTimeout;
+        this.authorTimeout = authorTimeout;
+    }
+
+    public Mono<PostPage> composePostPage(String postId, CommentRequest commentRequest) {
+        Mono<PagePart<List<Comment>>> comments = part("comments", commentClient
+                .findCommentsByPostId(postId, commentRequest)
+                .collectList(), commentsTimeout);
+        Mono<Tuple3<Post, PagePart<Subreddit>, PagePart<UserProfile>>> postWithSidebar = postClient
+                .findPostById(postId)
+                .timeout(postTimeout)
+                .flatMap(post -> Mono.zip(
+                        Mono.just(post),
+                        part("subreddit", subredditClient.findSubredditByName(post.getSubredditName()), subredditTimeout),
+                        part("author", userClient.findUserProfileByUsername(post.getAuthor()), authorTimeout)));
+        return Mono.zip(postWithSidebar, comments, (post, commentsPart) ->
+                compose(post.getT1(), commentsPart, post.getT2(), post.getT3()));
+    }
+
+    private PostPage compose(Post post,
+                             PagePart<List<Comment>> comments,
+                             PagePart<Subreddit> subreddit,
+                             PagePart<UserProfile> author) {
+        List<String> degraded = Stream.of(comments, subreddit, author)
+                .filter(PagePart::isDegraded)
+                .map(PagePart::getName)
+                .collect(Collectors.toList());
+        return new PostPage(post, comments.getValue(), subreddit.getValue(), author.getValue(), degraded);
+    }
+
+    private <T> Mono<PagePart<T>> part(String name, Mono<T> source, Duration timeout) {
+        return source
+                .timeout(timeout)
+                .map(value -> new PagePart<>(name, value, false))
+                .defaultIfEmpty(new PagePart<>(name, null, false))
+                .onErrorResume(ex -> {
+                    log.warn("Post page part {} degraded", name, ex);
+                    return Mono.just(new PagePart<>(name, null, true));
+                });
+    }
+}
@@ -1,45 +1,145 @@
 package com.redditclone.redditservice.post;
 
 import com.redditclone.redditservice.VoteType;
+import com.redditclone.redditservice.cache.ReactiveCache;
+import com.redditclone.redditservice.cache.ReactiveCaches;
+import com.redditclone.redditservice.event.EventBus;
+import com.redditclone.redditservice.routing.BackendAuthentication;
+import com.redditclone.redditservice.routing.BackendRequesters;
+import com.redditclone.redditservice.routing.LoadBalancedRequester;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+
 @Component
 public class DefaultPostClient implements PostClient {
 
+    private final BackendAuthentication authentication;
+    private final EventBus eventBus;
+    private final LoadBalancedRequester requester;
+    private final ReactiveCache postCache;
+    private Disposable changes;
+
+    public DefaultPostClient(BackendAuthentication authentication,
+                             BackendRequesters requesters,
+                             ReactiveCaches caches,
+                             EventBus eventBus) {
+        this.authentication = authentication;
+        this.eventBus = eventBus;
+        this.requester = requesters.forRoute("post-service");
+        this.postCache = caches.forCache("posts");
+    }
+
+    @PostConstruct
+    public void listenForChanges() {
+        changes = requester
+                .broadcast(target -> authentication.service()
+                                .flatMapMany(metadata -> target
+                                        .route("stream.changes")
+                                        .metadata(metadata)
+                                        .retrieveFlux(PostChange.class)),
+                        // changes may have been missed while not subscribed
+                        postCache::invalidateAll)
+                .doOnNext(eventBus::publish)
+                .subscribe(this::evict);
+    }
+
+    @PreDestroy
+    public void stopListening() {
+        changes.dispose();
+    }
+
+    private void evict(PostChange change) {
+        String postId = change.getPostId();
+        postCache.invalidate(postId);
+        if (change.getType() == PostChange.Type.CREATED) {
+            postCache.invalidateIf((key, value) -> key.startsWith(subredditKeyPrefix(change.getSubredditName())) ||
+                                                   key.startsWith(userKeyPrefix(change.getAuthor())));
+        } else {
+            postCache.invalidateIf((key, value) -> value instanceof List && ((List<?>) value).stream()
+                    .anyMatch(post -> ((Post) post).getPostId().equals(postId)));
+        }
+    }
+
+    private static String subredditKeyPrefix(String subredditName) {
+        return "subreddit_" + subredditName + "_";
+    }
+
+    private static String userKeyPrefix(String username) {
+        return "user_" + username + "_";
+    }
+
     @Override
     public Flux<Post> findPostsBySubreddit(String subredditName, PostRequest request) {
-        return Flux.empty();
+        String key = subredditKeyPrefix(subredditName) + request.toCacheKey();
+        return postCache.flux(key, () -> authentication.service()
+                .flatMapMany(metadata -> requester.flux(target -> target
+                        .route("find.posts.subreddit.{subredditName}", subredditName)
+                        .metadata(metadata)
+                        .data(request)
+                        .retrieveFlux(Post.class))));
     }
 
     @Override
     public Flux<Post> findPostsByUsername(String username, PostRequest request) {
-        return Flux.empty();
+        String key = userKeyPrefix(username) + request.toCacheKey();
+        return postCache.flux(key, () -> authentication.service()
+                .flatMapMany(metadata -> requester.flux(target -> target
+                        .route("find.posts.user.{username}", username)
+                        .metadata(metadata)
+                        .data(request)
+                        .retrieveFlux(Post.class))));
     }
 
     @Override
     public Mono<Post> findPostById(String postId) {
-        return Mono.empty();
+        return postCache.mono(postId, () -> authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("find.post.{postId}", postId)
+                        .metadata(metadata)
+                        .retrieveMono(Post.class))));
     }
 
     @Override
     public Mono<Post> createPost(String username, CreatePost create) {
-        return Mono.empty();
+        return authentication.user(username)
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("create.post")
+                        .metadata(metadata)
+                        .data(create)
+                        .retrieveMono(Post.class)));
     }
 
     @Override
     public Mono<Post> editPost(String postId, String username, EditPost edit) {
-        return Mono.empty();
+        return authentication.user(username)
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("edit.post.{postId}", postId)
+                        .metadata(metadata)
+                        .data(edit)
+                        .retrieveMono(Post.class)));
     }
 
     @Override
     public Mono<Void> deletePost(String postId, String username) {
-        return Mono.empty();
+        return authentication.user(username)
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("delete.post.{postId}", postId)
+                        .metadata(metadata)
+                        .retrieveMono(Void.class)));
     }
 
     @Override
     public Mono<Void> votePost(String postId, VoteType voteType, String username) {
-        return Mono.empty();
+        return authentication.user(username)
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("vote.post.{postId}.{voteType}", postId, voteType)
+                        .metadata(metadata)
+                        .retrieveMono(Void.class)));
     }
 }
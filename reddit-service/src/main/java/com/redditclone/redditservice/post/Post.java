@@ -23,4 +23,7 @@ public class Post {
     Instant posted;
     Instant edited;
     boolean deleted;
+    long commentCount;
+    Instant lastActivity;
+    String cursor;
 }
@@ -0,0 +1,23 @@
+package com.redditclone.redditservice.post;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostChange {
+
+    Type type;
+    String postId;
+    String subredditName;
+    String author;
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, SCORED
+    }
+}
@@ -1,10 +1,13 @@
 package com.redditclone.redditservice.post;
 
 import com.redditclone.redditservice.VoteType;
+import com.redditclone.redditservice.event.EventBus;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -14,6 +17,7 @@ import reactor.core.publisher.Mono;
 public class PostController {
 
     private final PostClient postClient;
+    private final EventBus eventBus;
 
     @GetMapping
     public Flux<Post> findPostsBySubreddit(PostRequest request) {
@@ -27,6 +31,12 @@ public class PostController {
         return postClient.findPostsByUsername("", request);
     }
 
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<PostChange> streamPostChanges() {
+        // a live feed only needs the latest changes, so a slow client loses the oldest ones
+        return eventBus.subscribe(PostChange.class, BufferOverflowStrategy.DROP_OLDEST);
+    }
+
     @GetMapping("/{postId}")
     public Mono<Post> findPostById(@PathVariable String postId) {
         return postClient.findPostById(postId);
@@ -17,6 +17,7 @@ public class PostRequest implements CacheableRequest {
     Integer page = 0;
     Integer size = 10;
     SortBy sort = SortBy.NEW;
+    String after;
 
 }
 
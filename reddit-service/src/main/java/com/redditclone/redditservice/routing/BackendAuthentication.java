@@ -0,0 +1,103 @@
+package com.redditclone.redditservice.routing;
+
+import com.redditclone.redditservice.OAuth2TokenService;
+import com.redditclone.redditservice.utils.RSocketUtils;
+import com.redditclone.redditservice.utils.SecurityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.function.Consumer;
+
+/**
+ * Decides how backend requests are authenticated. By default every request carries a bearer token: the
+ * gateway's own for reads and the user's for writes. With {@code routes.setup-auth.enabled} the gateway's token
+ * is only sent in the SETUP frame of each connection, and writes carry a short lived claim naming the user,
+ * signed with the secret shared with the backends, instead of the user's token.
+ */
+@Component
+public class BackendAuthentication {
+
+    public static final MimeType USER_CLAIM_MIME_TYPE = MimeTypeUtils.parseMimeType("message/x.reddit-clone.user-claim");
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Consumer<RSocketRequester.MetadataSpec<?>> NO_METADATA = spec -> {
+    };
+
+    private final OAuth2TokenService tokenService;
+    private final boolean setupAuthEnabled;
+    private final Duration drainTimeout;
+    private final byte[] userClaimsSecret;
+    private final Duration userClaimLifetime;
+
+    public BackendAuthentication(OAuth2TokenService tokenService,
+                                 @Value("${routes.setup-auth.enabled:false}") boolean setupAuthEnabled,
+                                 @Value("${routes.setup-auth.drain-timeout:30s}") Duration drainTimeout,
+                                 @Value("${oauth2.user-claims.secret:}") String userClaimsSecret,
+                                 @Value("${oauth2.user-claims.lifetime:30s}") Duration userClaimLifetime) {
+        if (setupAuthEnabled && userClaimsSecret.isBlank()) {
+            throw new IllegalStateException("routes.setup-auth.enabled requires oauth2.user-claims.secret");
+        }
+        this.tokenService = tokenService;
+        this.setupAuthEnabled = setupAuthEnabled;
+        this.drainTimeout = drainTimeout;
+        this.userClaimsSecret = userClaimsSecret.getBytes(StandardCharsets.UTF_8);
+        this.userClaimLifetime = userClaimLifetime;
+    }
+
+    public boolean isSetupAuthEnabled() {
+        return setupAuthEnabled;
+    }
+
+    public Duration getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public Mono<String> setupToken() {
+        return tokenService.getToken();
+    }
+
+    /**
+     * Metadata for requests made with the gateway's own identity.
+     */
+    public Mono<Consumer<RSocketRequester.MetadataSpec<?>>> service() {
+        if (setupAuthEnabled) {
+            return Mono.just(NO_METADATA);
+        }
+        return tokenService.getToken().map(RSocketUtils::addTokenToMetadata);
+    }
+
+    /**
+     * Metadata for requests made on behalf of the signed in user.
+     */
+    public Mono<Consumer<RSocketRequester.MetadataSpec<?>>> user(String username) {
+        if (setupAuthEnabled) {
+            String claim = signClaim(username, Instant.now().plus(userClaimLifetime));
+            return Mono.just(spec -> spec.metadata(claim, USER_CLAIM_MIME_TYPE));
+        }
+        return SecurityUtils.getUserToken().map(RSocketUtils::addTokenToMetadata);
+    }
+
+    String signClaim(String username, Instant expiresAt) {
+        String content = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(username.getBytes(StandardCharsets.UTF_8)) + "." + expiresAt.getEpochSecond();
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(userClaimsSecret, ALGORITHM));
+            byte[] signature = mac.doFinal(content.getBytes(StandardCharsets.UTF_8));
+            return content + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
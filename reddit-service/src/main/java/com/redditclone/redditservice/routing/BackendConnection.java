@@ -0,0 +1,106 @@
+package com.redditclone.redditservice.routing;
+
+import org.springframework.messaging.rsocket.RSocketRequester;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * The connection to one backend instance. Without a setup token every request carries its own credentials and
+ * a single requester is used for the lifetime of the gateway. With one, the gateway authenticates once in the
+ * SETUP frame, so a new requester is connected whenever the token rotates and the previous one is disposed
+ * after its in-flight requests had time to drain.
+ */
+public class BackendConnection {
+
+    private final Function<String, RSocketRequester> connector;
+    private final Mono<String> setupToken;
+    private final Duration drainTimeout;
+    private volatile Connected current;
+
+    private BackendConnection(Function<String, RSocketRequester> connector, Mono<String> setupToken,
+                              Duration drainTimeout) {
+        this.connector = connector;
+        this.setupToken = setupToken;
+        this.drainTimeout = drainTimeout;
+    }
+
+    public static BackendConnection fixed(RSocketRequester requester) {
+        BackendConnection connection = new BackendConnection(token -> requester, null, Duration.ZERO);
+        connection.current = new Connected(null, requester);
+        return connection;
+    }
+
+    public static BackendConnection setupAuthenticated(Function<String, RSocketRequester> connector,
+                                                       Mono<String> setupToken, Duration drainTimeout) {
+        return new BackendConnection(connector, setupToken, drainTimeout);
+    }
+
+    public Mono<RSocketRequester> requester() {
+        return connected().map(connected -> connected.requester);
+    }
+
+    /**
+     * A long lived stream from this instance. When the token rotates the stream is opened on the new connection
+     * as well and the one on the previous connection is ended just before it is disposed, so moving to the new
+     * connection neither fails the stream nor leaves a gap in it.
+     */
+    public <T> Flux<T> stream(Function<RSocketRequester, Flux<T>> call) {
+        return connected()
+                .expand(connected -> connected.successor.asMono())
+                .flatMap(connected -> call.apply(connected.requester).takeUntilOther(connected.retired.asMono()));
+    }
+
+    private Mono<Connected> connected() {
+        if (setupToken == null) {
+            return Mono.fromSupplier(() -> current);
+        }
+        return setupToken.map(this::connectedWith);
+    }
+
+    public void dispose() {
+        Connected connected = current;
+        if (connected != null) {
+            connected.requester.rsocketClient().dispose();
+        }
+    }
+
+    private Connected connectedWith(String token) {
+        Connected connected = current;
+        if (connected != null && connected.token.equals(token)) {
+            return connected;
+        }
+        synchronized (this) {
+            Connected previous = current;
+            if (previous != null && previous.token.equals(token)) {
+                return previous;
+            }
+            current = new Connected(token, connector.apply(token));
+            if (previous != null) {
+                previous.successor.tryEmitValue(current);
+                Mono.delay(drainTimeout).subscribe(tick -> {
+                    previous.retired.tryEmitEmpty();
+                    previous.requester.rsocketClient().dispose();
+                });
+            }
+            return current;
+        }
+    }
+
+    private static class Connected {
+
+        private final String token;
+        private final RSocketRequester requester;
+        private final Sinks.One<Connected> successor = Sinks.one();
+        private final Sinks.Empty<Void> retired = Sinks.empty();
+
+        Connected(String token, RSocketRequester requester) {
+            this.token = token;
+            this.requester = Objects.requireNonNull(requester);
+        }
+    }
+}
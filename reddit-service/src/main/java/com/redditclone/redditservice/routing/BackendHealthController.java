@@ -0,0 +1,22 @@
+package com.redditclone.redditservice.routing;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/routes")
+public class BackendHealthController {
+
+    private final BackendRequesters requesters;
+
+    @GetMapping("/health")
+    public Map<String, List<TargetHealth>> health() {
+        return requesters.health();
+    }
+}
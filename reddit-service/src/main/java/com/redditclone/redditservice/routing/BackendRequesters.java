@@ -0,0 +1,89 @@
+package com.redditclone.redditservice.routing;
+
+import io.rsocket.metadata.WellKnownMimeType;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.rsocket.metadata.BearerTokenAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.BearerTokenMetadata;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Creates one {@link LoadBalancedRequester} per backend route configured under {@code routes.<name>}.
+ */
+@Component
+public class BackendRequesters {
+
+    private static final MimeType AUTHENTICATION_MIME_TYPE =
+            MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString());
+
+    private final ObjectProvider<RSocketRequester.Builder> requesterBuilders;
+    private final BackendAuthentication authentication;
+    private final Binder binder;
+    private final Map<String, LoadBalancedRequester> requesters = new ConcurrentHashMap<>();
+
+    public BackendRequesters(ObjectProvider<RSocketRequester.Builder> requesterBuilders,
+                             BackendAuthentication authentication,
+                             Environment environment) {
+        this.requesterBuilders = requesterBuilders;
+        this.authentication = authentication;
+        this.binder = Binder.get(environment);
+    }
+
+    public LoadBalancedRequester forRoute(String route) {
+        return requesters.computeIfAbsent(route, this::create);
+    }
+
+    public Map<String, List<TargetHealth>> health() {
+        return new TreeMap<>(requesters.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().health())));
+    }
+
+    @PreDestroy
+    public void dispose() {
+        requesters.values().forEach(LoadBalancedRequester::dispose);
+    }
+
+    private LoadBalancedRequester create(String route) {
+        RouteProperties properties = binder
+                .bind("routes." + route, RouteProperties.class)
+                .orElseThrow(() -> new IllegalStateException("No instances configured for route " + route));
+        List<BackendTarget> targets = properties.toTargets().stream()
+                .map(target -> createTarget(target, properties))
+                .collect(Collectors.toList());
+        if (targets.isEmpty()) {
+            throw new IllegalStateException("No instances configured for route " + route);
+        }
+        return new LoadBalancedRequester(targets, properties.getStrategy());
+    }
+
+    private BackendTarget createTarget(String target, RouteProperties properties) {
+        BackendConnection connection = authentication.isSetupAuthEnabled()
+                ? BackendConnection.setupAuthenticated(token -> connect(target, token), authentication.setupToken(),
+                                                       authentication.getDrainTimeout())
+                : BackendConnection.fixed(connect(target, null));
+        return new BackendTarget(target, connection, properties.getMinBackoff(), properties.getMaxBackoff());
+    }
+
+    private RSocketRequester connect(String target, String setupToken) {
+        int separator = target.lastIndexOf(':');
+        RSocketRequester.Builder builder = requesterBuilders.getObject()
+                .rsocketStrategies(configurer -> configurer.encoder(new BearerTokenAuthenticationEncoder()))
+                .dataMimeType(MediaType.APPLICATION_CBOR);
+        if (setupToken != null) {
+            builder.setupMetadata(new BearerTokenMetadata(setupToken), AUTHENTICATION_MIME_TYPE);
+        }
+        return builder.tcp(target.substring(0, separator), Integer.parseInt(target.substring(separator + 1)));
+    }
+}
@@ -0,0 +1,115 @@
+package com.redditclone.redditservice.routing;
+
+import io.rsocket.exceptions.ApplicationErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * One backend instance behind a route. The requester dials lazily and dials again on the next request after
+ * its connection is lost, so a failing target is only taken out of rotation for an exponentially growing
+ * backoff instead of being retried on every request.
+ */
+@Slf4j
+public class BackendTarget {
+
+    private final String target;
+    private final BackendConnection connection;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile Instant retryAfter = Instant.EPOCH;
+
+    public BackendTarget(String target, BackendConnection connection, Duration minBackoff, Duration maxBackoff) {
+        this.target = target;
+        this.connection = connection;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    public <T> Mono<T> mono(Function<RSocketRequester, Mono<T>> call) {
+        return Mono
+                .defer(() -> {
+                    activeRequests.incrementAndGet();
+                    return connection.requester().flatMap(call);
+                })
+                .doOnSuccess(result -> recordSuccess())
+                .doOnError(this::recordFailure)
+                .doFinally(signal -> activeRequests.decrementAndGet());
+    }
+
+    public <T> Flux<T> flux(Function<RSocketRequester, Flux<T>> call) {
+        return Flux
+                .defer(() -> {
+                    activeRequests.incrementAndGet();
+                    return connection.requester().flatMapMany(call);
+                })
+                .doOnComplete(this::recordSuccess)
+                .doOnError(this::recordFailure)
+                .doFinally(signal -> activeRequests.decrementAndGet());
+    }
+
+    /**
+     * A long lived stream from this target that is subscribed again with backoff whenever it ends, running
+     * {@code onResubscribe} first. Moving to a new connection when the setup token rotates is not a resubscription.
+     */
+    public <T> Flux<T> stream(Function<RSocketRequester, Flux<T>> call, Runnable onResubscribe) {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        return Flux
+                .defer(() -> {
+                    if (subscribed.getAndSet(true)) {
+                        onResubscribe.run();
+                    }
+                    return connection.stream(call);
+                })
+                .doOnError(ex -> log.warn("Stream from backend {} failed, resubscribing", target, ex))
+                .repeatWhen(completed -> completed.delayElements(minBackoff))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, minBackoff).maxBackoff(maxBackoff).transientErrors(true));
+    }
+
+    public boolean isUp() {
+        return !Instant.now().isBefore(retryAfter);
+    }
+
+    public int getActiveRequests() {
+        return activeRequests.get();
+    }
+
+    public TargetHealth toHealth() {
+        return new TargetHealth(target, isUp(), activeRequests.get(), consecutiveFailures.get(),
+                consecutiveFailures.get() == 0 ? null : retryAfter);
+    }
+
+    public void dispose() {
+        connection.dispose();
+    }
+
+    private void recordSuccess() {
+        consecutiveFailures.set(0);
+        retryAfter = Instant.EPOCH;
+    }
+
+    private void recordFailure(Throwable ex) {
+        // the backend answered, it just rejected this request
+        if (ex instanceof ApplicationErrorException) {
+            recordSuccess();
+            return;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        Duration backoff = minBackoff.multipliedBy(1L << Math.min(failures - 1, 16));
+        if (backoff.compareTo(maxBackoff) > 0) {
+            backoff = maxBackoff;
+        }
+        retryAfter = Instant.now().plus(backoff);
+        log.warn("Backend {} failed {} time(s) in a row, retrying in {}", target, failures, backoff, ex);
+    }
+}
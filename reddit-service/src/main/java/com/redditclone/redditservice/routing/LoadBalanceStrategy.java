@@ -0,0 +1,5 @@
+package com.redditclone.redditservice.routing;
+
+public enum LoadBalanceStrategy {
+    ROUND_ROBIN, LEAST_LOADED
+}
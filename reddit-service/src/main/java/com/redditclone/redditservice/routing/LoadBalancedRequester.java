@@ -0,0 +1,87 @@
+package com.redditclone.redditservice.routing;
+
+import org.springframework.messaging.rsocket.RSocketRequester;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads requests over the targets of a route. Targets in backoff are skipped while any other target is up,
+ * and a request that could not connect at all is sent to the next target, since it never reached a backend.
+ */
+public class LoadBalancedRequester {
+
+    private final List<BackendTarget> targets;
+    private final LoadBalanceStrategy strategy;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public LoadBalancedRequester(List<BackendTarget> targets, LoadBalanceStrategy strategy) {
+        this.targets = List.copyOf(targets);
+        this.strategy = strategy;
+    }
+
+    public <T> Mono<T> mono(Function<RSocketRequester, Mono<T>> call) {
+        return Mono
+                .defer(() -> select().mono(call))
+                .retryWhen(failover());
+    }
+
+    public <T> Flux<T> flux(Function<RSocketRequester, Flux<T>> call) {
+        return Flux
+                .defer(() -> select().flux(call))
+                .retryWhen(failover());
+    }
+
+    /**
+     * Merges a stream from every target, for events that each instance only publishes about its own writes.
+     * {@code onResubscribe} runs whenever the stream of a target failed or ended and is subscribed again.
+     */
+    public <T> Flux<T> broadcast(Function<RSocketRequester, Flux<T>> call, Runnable onResubscribe) {
+        return Flux.merge(targets.stream()
+                .map(target -> target.stream(call, onResubscribe))
+                .collect(Collectors.toList()));
+    }
+
+    public List<TargetHealth> health() {
+        return targets.stream()
+                .map(BackendTarget::toHealth)
+                .collect(Collectors.toList());
+    }
+
+    public void dispose() {
+        targets.forEach(BackendTarget::dispose);
+    }
+
+    private Retry failover() {
+        return Retry
+                .max(targets.size() - 1)
+                .filter(ex -> ex instanceof ConnectException)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private BackendTarget select() {
+        List<BackendTarget> up = targets.stream()
+                .filter(BackendTarget::isUp)
+                .collect(Collectors.toList());
+        List<BackendTarget> candidates = up.isEmpty() ? targets : up;
+        int offset = Math.floorMod(next.getAndIncrement(), candidates.size());
+        if (strategy == LoadBalanceStrategy.ROUND_ROBIN) {
+            return candidates.get(offset);
+        }
+        // least loaded, starting the scan at the round robin position so ties are spread as well
+        BackendTarget selected = candidates.get(offset);
+        for (int i = 1; i < candidates.size(); i++) {
+            BackendTarget candidate = candidates.get((offset + i) % candidates.size());
+            if (candidate.getActiveRequests() < selected.getActiveRequests()) {
+                selected = candidate;
+            }
+        }
+        return selected;
+    }
+}
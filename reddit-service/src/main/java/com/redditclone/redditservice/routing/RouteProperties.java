@@ -0,0 +1,33 @@
+package com.redditclone.redditservice.routing;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RouteProperties {
+
+    List<String> instances = List.of();
+    String host;
+    Integer port;
+    LoadBalanceStrategy strategy = LoadBalanceStrategy.ROUND_ROBIN;
+    Duration minBackoff = Duration.ofSeconds(1);
+    Duration maxBackoff = Duration.ofSeconds(30);
+
+    /**
+     * The configured instances as {@code host:port} pairs, falling back to the single {@code host} and {@code port}.
+     */
+    public List<String> toTargets() {
+        if (!instances.isEmpty()) {
+            return instances;
+        }
+        if (host == null || port == null) {
+            return List.of();
+        }
+        return List.of(host + ":" + port);
+    }
+}
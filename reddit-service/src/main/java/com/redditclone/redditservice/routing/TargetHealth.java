@@ -0,0 +1,16 @@
+package com.redditclone.redditservice.routing;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+public class TargetHealth {
+
+    String target;
+    boolean up;
+    int activeRequests;
+    int consecutiveFailures;
+    Instant retryAfter;
+
+}
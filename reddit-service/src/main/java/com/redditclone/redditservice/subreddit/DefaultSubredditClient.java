@@ -1,102 +1,126 @@
 package com.redditclone.redditservice.subreddit;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.redditclone.redditservice.OAuth2TokenService;
-import com.redditclone.redditservice.utils.RSocketUtils;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
-import org.springframework.messaging.rsocket.RSocketRequester;
-import org.springframework.security.rsocket.metadata.BearerTokenAuthenticationEncoder;
+import com.redditclone.redditservice.cache.ReactiveCache;
+import com.redditclone.redditservice.cache.ReactiveCaches;
+import com.redditclone.redditservice.event.EventBus;
+import com.redditclone.redditservice.routing.BackendAuthentication;
+import com.redditclone.redditservice.routing.BackendRequesters;
+import com.redditclone.redditservice.routing.LoadBalancedRequester;
 import org.springframework.stereotype.Component;
-import reactor.cache.CacheFlux;
-import reactor.cache.CacheMono;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
 
 @Component
 public class DefaultSubredditClient implements SubredditClient {
 
-    private final OAuth2TokenService tokenService;
-    private final RSocketRequester requester;
-    private final Cache<String, Object> subredditCache;
+    private static final String PAGE_KEY_PREFIX = "page_";
 
-    public DefaultSubredditClient(OAuth2TokenService tokenService,
-                                  RSocketRequester.Builder requesterBuilder,
-                                  @Value("${routes.subreddit-service.host}") String host,
-                                  @Value("${routes.subreddit-service.port}") Integer port) {
-        this.tokenService = tokenService;
-        this.requester = requesterBuilder
-                .rsocketStrategies(configurer -> configurer.encoder(new BearerTokenAuthenticationEncoder()))
-                .dataMimeType(MediaType.APPLICATION_CBOR)
-                .tcp(host, port);
-        this.subredditCache = Caffeine
-                .newBuilder()
-                .maximumSize(10_000L)
-                .expireAfterWrite(Duration.ofMinutes(1))
-                .build();
+    private final BackendAuthentication authentication;
+    private final EventBus eventBus;
+    private final LoadBalancedRequester requester;
+    private final ReactiveCache subredditCache;
+    private Disposable changes;
+
+    public DefaultSubredditClient(BackendAuthentication authentication,
+                                  BackendRequesters requesters,
+                                  ReactiveCaches caches,
+                                  EventBus eventBus) {
+        this.authentication = authentication;
+        this.eventBus = eventBus;
+        this.requester = requesters.forRoute("subreddit-service");
+        this.subredditCache = caches.forCache("subreddits");
+    }
+
+    @PostConstruct
+    public void listenForChanges() {
+        changes = requester
+                .broadcast(target -> authentication.service()
+                                .flatMapMany(metadata -> target
+                                        .route("stream.changes")
+                                        .metadata(metadata)
+                                        .retrieveFlux(SubredditChange.class)),
+                        // changes may have been missed while not subscribed
+                        subredditCache::invalidateAll)
+                .doOnNext(eventBus::publish)
+                .subscribe(this::evict);
+    }
+
+    @PreDestroy
+    public void stopListening() {
+        changes.dispose();
+    }
+
+    private void evict(SubredditChange change) {
+        String subredditName = change.getSubredditName();
+        subredditCache.invalidate(subredditName);
+        if (change.getType() == SubredditChange.Type.CREATED) {
+            subredditCache.invalidateIf((key, value) -> key.startsWith(PAGE_KEY_PREFIX));
+        } else {
+            subredditCache.invalidateIf((key, value) -> key.startsWith(PAGE_KEY_PREFIX) && ((List<?>) value).stream()
+                    .anyMatch(subreddit -> ((Subreddit) subreddit).getName().equals(subredditName)));
+        }
     }
 
     @Override
     public Flux<Subreddit> findSubreddits(SubredditRequest request) {
-        return CacheFlux
-                .lookup(subredditCache.asMap(), request.toCacheKey(), Subreddit.class)
-                .onCacheMissResume(() -> tokenService.getToken()
-                        .flatMapMany(token -> requester
-                                .route("find.subreddits")
-                                .metadata(RSocketUtils.addTokenToMetadata(token))
-                                .data(request)
-                                .retrieveFlux(Subreddit.class)));
+        String key = PAGE_KEY_PREFIX + request.toCacheKey();
+        return subredditCache.flux(key, () -> authentication.service()
+                .flatMapMany(metadata -> requester.flux(target -> target
+                        .route("find.subreddits")
+                        .metadata(metadata)
+                        .data(request)
+                        .retrieveFlux(Subreddit.class))));
     }
 
     @Override
     public Mono<Subreddit> findSubredditByName(String subredditName) {
-        return CacheMono
-                .lookup(subredditCache.asMap(), subredditName, Subreddit.class)
-                .onCacheMissResume(() -> tokenService.getToken()
-                        .flatMap(token -> requester
-                                .route("find.subreddit.{subredditName}", subredditName)
-                                .metadata(RSocketUtils.addTokenToMetadata(token))
-                                .retrieveMono(Subreddit.class)));
+        return subredditCache.mono(subredditName, () -> authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("find.subreddit.{subredditName}", subredditName)
+                        .metadata(metadata)
+                        .retrieveMono(Subreddit.class))));
     }
 
     @Override
     public Mono<Subreddit> createSubreddit(String username, CreateSubreddit create) {
-        return tokenService.getToken()
-                .flatMap(token -> requester
+        return authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
                         .route("create.subreddit.by.{username}", username)
-                        .metadata(RSocketUtils.addTokenToMetadata(token))
+                        .metadata(metadata)
                         .data(create)
-                        .retrieveMono(Subreddit.class));
+                        .retrieveMono(Subreddit.class)));
     }
 
     @Override
     public Mono<Subreddit> editSubreddit(String subredditName, String username, EditSubreddit edit) {
-        return tokenService.getToken()
-                .flatMap(token -> requester
+        return authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
                         .route("edit.subreddit.{subredditName}.by.{username}", subredditName, username)
-                        .metadata(RSocketUtils.addTokenToMetadata(token))
+                        .metadata(metadata)
                         .data(edit)
-                        .retrieveMono(Subreddit.class));
+                        .retrieveMono(Subreddit.class)));
     }
 
     @Override
     public Mono<Void> addSubredditMember(String subredditName, String username) {
-        return tokenService.getToken()
-                .flatMap(token -> requester
+        return authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
                         .route("add.{username}.to.{subredditName}.members", username, subredditName)
-                        .metadata(RSocketUtils.addTokenToMetadata(token))
-                        .retrieveMono(Void.class));
+                        .metadata(metadata)
+                        .retrieveMono(Void.class)));
     }
 
     @Override
     public Mono<Void> removeSubredditMember(String subredditName, String username) {
-        return tokenService.getToken()
-                .flatMap(token -> requester
+        return authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
                         .route("remove.{username}.from.{subredditName}.members", username, subredditName)
-                        .metadata(RSocketUtils.addTokenToMetadata(token))
-                        .retrieveMono(Void.class));
+                        .metadata(metadata)
+                        .retrieveMono(Void.class)));
     }
 }
@@ -23,4 +23,5 @@ public class Subreddit {
     Instant edited;
     Set<String> topics;
     Long members;
+    String cursor;
 }
@@ -0,0 +1,21 @@
+package com.redditclone.redditservice.subreddit;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@AllArgsConstructor
+@NoArgsConstructor
+public class SubredditChange {
+
+    Type type;
+    String subredditName;
+
+    public enum Type {
+        CREATED, UPDATED, MEMBERS
+    }
+}
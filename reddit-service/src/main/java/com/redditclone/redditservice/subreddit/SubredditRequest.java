@@ -17,5 +17,6 @@ public class SubredditRequest implements CacheableRequest {
     Integer page = 0;
     Integer size = 10;
     SortBy sort = SortBy.NEW;
+    String after;
 
 }
@@ -0,0 +1,35 @@
+package com.redditclone.redditservice.user;
+
+import com.redditclone.redditservice.cache.ReactiveCache;
+import com.redditclone.redditservice.cache.ReactiveCaches;
+import com.redditclone.redditservice.routing.BackendAuthentication;
+import com.redditclone.redditservice.routing.BackendRequesters;
+import com.redditclone.redditservice.routing.LoadBalancedRequester;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+@Component
+public class DefaultUserClient implements UserClient {
+
+    private final BackendAuthentication authentication;
+    private final LoadBalancedRequester requester;
+    private final ReactiveCache userCache;
+
+    public DefaultUserClient(BackendAuthentication authentication,
+                             BackendRequesters requesters,
+                             ReactiveCaches caches) {
+        this.authentication = authentication;
+        this.requester = requesters.forRoute("user-service");
+        this.userCache = caches.forCache("users");
+    }
+
+    @Override
+    public Mono<UserProfile> findUserProfileByUsername(String username) {
+        // the user service publishes no changes, karma is only as fresh as the cache ttl
+        return userCache.mono(username, () -> authentication.service()
+                .flatMap(metadata -> requester.mono(target -> target
+                        .route("find.user-profile.{username}", username)
+                        .metadata(metadata)
+                        .retrieveMono(UserProfile.class))));
+    }
+}
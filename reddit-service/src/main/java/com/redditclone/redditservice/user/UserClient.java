@@ -0,0 +1,8 @@
+package com.redditclone.redditservice.user;
+
+import reactor.core.publisher.Mono;
+
+public interface UserClient {
+
+    Mono<UserProfile> findUserProfileByUsername(String username);
+}
@@ -0,0 +1,20 @@
+package com.redditclone.redditservice.user;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserProfile {
+
+    String username;
+    Instant cakeDay;
+    Karma karma;
+}
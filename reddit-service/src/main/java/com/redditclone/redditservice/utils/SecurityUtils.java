@@ -0,0 +1,22 @@
+package com.redditclone.redditservice.utils;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
+import reactor.core.publisher.Mono;
+
+@UtilityClass
+public class SecurityUtils {
+
+    /**
+     * The bearer token of the current request, for backends that act on behalf of the signed in user.
+     */
+    public Mono<String> getUserToken() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(AbstractOAuth2TokenAuthenticationToken.class::isInstance)
+                .map(authentication -> ((AbstractOAuth2TokenAuthenticationToken<?>) authentication).getToken().getTokenValue())
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("No bearer token in the security context")));
+    }
+}
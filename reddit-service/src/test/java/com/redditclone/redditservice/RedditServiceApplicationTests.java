@@ -1,7 +1,63 @@
 package com.redditclone.redditservice;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.redditclone.redditservice.cache.CacheProperties;
+import com.redditclone.redditservice.cache.ReactiveCache;
+import com.redditclone.redditservice.comment.Comment;
+import com.redditclone.redditservice.comment.CommentChange;
+import com.redditclone.redditservice.comment.CommentClient;
+import com.redditclone.redditservice.comment.CommentController;
+import com.redditclone.redditservice.comment.CommentDelta;
+import com.redditclone.redditservice.comment.CommentRequest;
+import com.redditclone.redditservice.comment.FlatCommentTree;
+import com.redditclone.redditservice.event.EventBus;
+import com.redditclone.redditservice.event.EventBusStats;
+import com.redditclone.redditservice.page.PostPageComposer;
+import com.redditclone.redditservice.post.Post;
+import com.redditclone.redditservice.post.PostChange;
+import com.redditclone.redditservice.post.PostClient;
+import com.redditclone.redditservice.post.PostController;
+import com.redditclone.redditservice.post.PostRequest;
+import com.redditclone.redditservice.routing.BackendConnection;
+import com.redditclone.redditservice.routing.BackendTarget;
+import com.redditclone.redditservice.subreddit.SubredditClient;
+import com.redditclone.redditservice.user.UserClient;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 class RedditServiceApplicationTests {
@@ -10,4 +66,315 @@ class RedditServiceApplicationTests {
 	void contextLoads() {
 	}
 
+	@Test
+	void reactiveCache_whenConcurrentMisses_shouldShareOneLoad() {
+		ReactiveCache cache = new ReactiveCache("test", new CacheProperties());
+		AtomicInteger calls = new AtomicInteger();
+		Sinks.One<String> upstream = Sinks.one();
+
+		Mono<String> load = cache.mono("key", () -> {
+			calls.incrementAndGet();
+			return upstream.asMono();
+		});
+
+		StepVerifier first = StepVerifier.create(load).expectNext("value").expectComplete().verifyLater();
+		StepVerifier second = StepVerifier.create(load).expectNext("value").expectComplete().verifyLater();
+
+		upstream.tryEmitValue("value");
+		first.verify();
+		second.verify();
+
+		StepVerifier.create(load).expectNext("value").verifyComplete();
+
+		assertThat(calls).hasValue(1);
+		assertThat(cache.toStats()).extracting("misses", "coalesced", "hits", "loads").containsExactly(1L, 1L, 1L, 1L);
+	}
+
+	@Test
+	void reactiveCache_whenStale_shouldServeStaleValueAndRefreshInBackground() {
+		CacheProperties properties = new CacheProperties();
+		properties.setSoftTtl(Duration.ZERO);
+		ReactiveCache cache = new ReactiveCache("test", properties);
+		AtomicInteger calls = new AtomicInteger();
+
+		Supplier<Mono<Integer>> loader = () -> Mono.fromCallable(calls::incrementAndGet);
+
+		StepVerifier.create(cache.mono("key", loader)).expectNext(1).verifyComplete();
+		StepVerifier.create(cache.mono("key", loader)).expectNext(1).verifyComplete();
+		StepVerifier.create(cache.mono("key", loader)).expectNext(2).verifyComplete();
+
+		assertThat(cache.toStats()).extracting("staleHits", "refreshes").containsExactly(2L, 2L);
+	}
+
+	@Test
+	void reactiveCache_whenInvalidatedByValue_shouldOnlyEvictMatchingEntries() {
+		ReactiveCache cache = new ReactiveCache("test", new CacheProperties());
+
+		cache.flux("page_1", () -> Flux.just("a", "b")).blockLast();
+		cache.flux("page_2", () -> Flux.just("c")).blockLast();
+		cache.mono("a", () -> Mono.just("a")).block();
+
+		cache.invalidateIf((key, value) -> key.startsWith("page_") && ((List<?>) value).contains("a"));
+
+		assertThat(cache.toStats().getSize()).isEqualTo(2);
+		StepVerifier.create(cache.flux("page_1", () -> Flux.just("a", "b", "d"))).expectNext("a", "b", "d").verifyComplete();
+		StepVerifier.create(cache.flux("page_2", () -> Flux.just("e"))).expectNext("c").verifyComplete();
+	}
+
+	@Test
+	void reactiveCache_whenInvalidatedDuringRefresh_shouldNotStoreTheRefreshedValue() {
+		CacheProperties properties = new CacheProperties();
+		properties.setSoftTtl(Duration.ZERO);
+		ReactiveCache cache = new ReactiveCache("test", properties);
+		Sinks.One<String> refreshed = Sinks.one();
+
+		cache.mono("key", () -> Mono.just("old")).block();
+		StepVerifier.create(cache.mono("key", refreshed::asMono)).expectNext("old").verifyComplete();
+		cache.invalidate("key");
+		refreshed.tryEmitValue("refreshed");
+
+		StepVerifier.create(cache.mono("key", () -> Mono.just("new"))).expectNext("new").verifyComplete();
+	}
+
+	@Test
+	void reactiveCache_whenInvalidatedByValueWhileLoading_shouldEvictThePendingLoad() {
+		ReactiveCache cache = new ReactiveCache("test", new CacheProperties());
+		Sinks.One<List<String>> loading = Sinks.one();
+
+		StepVerifier pending = StepVerifier.create(cache.flux("page_1", () -> loading.asMono().flatMapIterable(items -> items)))
+				.expectNext("a")
+				.expectComplete()
+				.verifyLater();
+		cache.invalidateIf((key, value) -> ((List<?>) value).contains("a"));
+		loading.tryEmitValue(List.of("a"));
+		pending.verify();
+
+		StepVerifier.create(cache.flux("page_1", () -> Flux.just("b"))).expectNext("b").verifyComplete();
+	}
+
+	@Test
+	void tokenService_shouldFetchOnceAndKeepTheValidTokenWhenRefreshFailsUntilTheRetryDelay() {
+		ClientRegistration registration = ClientRegistration
+				.withRegistrationId("keycloak")
+				.clientId("reddit-service")
+				.tokenUri("http://localhost/token")
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.build();
+		AtomicInteger fetches = new AtomicInteger();
+		Sinks.One<OAuth2AccessTokenResponse> first = Sinks.one();
+		OAuth2ClientCredentialsTokenService tokenService = new OAuth2ClientCredentialsTokenService(
+				new InMemoryReactiveClientRegistrationRepository(registration),
+				request -> fetches.incrementAndGet() == 1 ? first.asMono() : Mono.error(new IllegalStateException("unavailable")),
+				Duration.ofSeconds(61), Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+		StepVerifier firstCaller = StepVerifier.create(tokenService.getToken("keycloak")).expectNext("token").expectComplete().verifyLater();
+		StepVerifier secondCaller = StepVerifier.create(tokenService.getToken("keycloak")).expectNext("token").expectComplete().verifyLater();
+		first.tryEmitValue(OAuth2AccessTokenResponse
+				.withToken("token")
+				.tokenType(OAuth2AccessToken.TokenType.BEARER)
+				.expiresIn(60)
+				.build());
+		firstCaller.verify();
+		secondCaller.verify();
+		assertThat(fetches).hasValue(1);
+
+		StepVerifier.create(tokenService.getToken("keycloak")).expectNext("token").verifyComplete();
+		assertThat(fetches).hasValue(2);
+
+		StepVerifier.create(tokenService.getToken("keycloak")).expectNext("token").verifyComplete();
+		assertThat(fetches).hasValue(2);
+	}
+
+	@Test
+	void postRequest_whenSortByHot_shouldForwardHotAndCacheItApart() throws IOException {
+		PostRequest hot = new PostRequest(0, 10, SortBy.HOT, null);
+		ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+		assertThat(cbor.readTree(cbor.writeValueAsBytes(hot)).get("sort").asText()).isEqualTo("HOT");
+		assertThat(hot.toCacheKey()).isNotEqualTo(new PostRequest(0, 10, SortBy.TOP, null).toCacheKey());
+	}
+
+	@Test
+	void postRequest_whenSortByActive_shouldForwardActiveAndCacheItApart() throws IOException {
+		PostRequest active = new PostRequest(0, 10, SortBy.ACTIVE, null);
+		ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+		assertThat(cbor.readTree(cbor.writeValueAsBytes(active)).get("sort").asText()).isEqualTo("ACTIVE");
+		assertThat(active.toCacheKey()).isNotEqualTo(new PostRequest(0, 10, SortBy.NEW, null).toCacheKey());
+	}
+
+	@Test
+	void postPage_whenPartsFailOrTimeOut_shouldReturnThePostWithDegradedParts() {
+		Post post = new Post();
+		post.setPostId("post1");
+		post.setSubredditName("test");
+		post.setAuthor("author1");
+		PostClient postClient = mock(PostClient.class);
+		CommentClient commentClient = mock(CommentClient.class);
+		SubredditClient subredditClient = mock(SubredditClient.class);
+		UserClient userClient = mock(UserClient.class);
+		when(postClient.findPostById("post1")).thenReturn(Mono.just(post));
+		when(commentClient.findCommentsByPostId(eq("post1"), any())).thenReturn(Flux.just(new Comment(), new Comment()));
+		when(subredditClient.findSubredditByName("test")).thenReturn(Mono.error(new IllegalStateException("unavailable")));
+		when(userClient.findUserProfileByUsername("author1")).thenReturn(Mono.never());
+		PostPageComposer composer = new PostPageComposer(postClient, commentClient, subredditClient, userClient,
+				Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofMillis(100), Duration.ofMillis(100));
+
+		StepVerifier.create(composer.composePostPage("post1", new CommentRequest()))
+				.assertNext(page -> {
+					assertThat(page.getPost()).isSameAs(post);
+					assertThat(page.getComments()).hasSize(2);
+					assertThat(page.getSubreddit()).isNull();
+					assertThat(page.getAuthor()).isNull();
+					assertThat(page.getDegraded()).containsExactly("subreddit", "author");
+				})
+				.verifyComplete();
+	}
+
+	@Test
+	void flatCommentTree_shouldRebuildTheNestedComments() {
+		FlatCommentTree flat = new FlatCommentTree("post", List.of(
+				new FlatCommentTree.Node(-1, 0, "root", "user1", "body1", 2L, null, null, false, null, "cursor"),
+				new FlatCommentTree.Node(0, 1, "child", "user2", "body2", 1L, null, null, false, "continuation", null),
+				new FlatCommentTree.Node(1, 2, "grandchild", "user3", "body3", 1L, null, null, true, null, null),
+				new FlatCommentTree.Node(-1, 0, "root2", "user4", "body4", 1L, null, null, false, null, "cursor2")));
+
+		List<Comment> comments = flat.toComments();
+
+		assertThat(comments).extracting(Comment::getCommentId).containsExactly("root", "root2");
+		Comment child = comments.get(0).getChildren().get(0);
+		assertThat(child.getPostId()).isEqualTo("post");
+		assertThat(child.getParentId()).isEqualTo("root");
+		assertThat(child.getContinuation()).isEqualTo("continuation");
+		assertThat(child.getChildren()).extracting(Comment::getParentId).containsExactly("child");
+		assertThat(comments.get(1).getChildren()).isEmpty();
+	}
+
+	@Test
+	void streamCommentsByPostId_shouldPushTheDeltasOfThePostAsServerSentEvents() {
+		Comment comment = new Comment();
+		comment.setCommentId("comment1");
+		comment.setPostId("post1");
+		comment.setBody("body1");
+		CommentClient commentClient = mock(CommentClient.class);
+		when(commentClient.streamCommentsByPostId("post1")).thenReturn(Flux.just(
+				new CommentDelta(CommentChange.Type.CREATED, comment),
+				new CommentDelta(CommentChange.Type.SCORED, comment)));
+		CommentController controller = new CommentController(commentClient);
+		// the controller's FIXME listings share one ambiguous mapping, so route to the endpoint itself
+		WebTestClient client = WebTestClient.bindToRouterFunction(RouterFunctions.route(
+				RequestPredicates.GET("/api/v1/comments/post/{postId}/stream"),
+				request -> ServerResponse.ok()
+						.contentType(MediaType.TEXT_EVENT_STREAM)
+						.body(controller.streamCommentsByPostId(request.pathVariable("postId")), CommentDelta.class)))
+				.build();
+
+		Flux<CommentDelta> deltas = client.get()
+				.uri("/api/v1/comments/post/{postId}/stream", "post1")
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+				.returnResult(CommentDelta.class)
+				.getResponseBody();
+
+		StepVerifier.create(deltas)
+				.expectNextMatches(it -> it.getType() == CommentChange.Type.CREATED && it.getComment().getCommentId().equals("comment1"))
+				.expectNextMatches(it -> it.getType() == CommentChange.Type.SCORED && it.getComment().getBody().equals("body1"))
+				.verifyComplete();
+	}
+
+	@Test
+	void eventBus_shouldReplayBoundedHistoryAndDropOverflowOfSlowSubscribers() {
+		EventBus eventBus = new EventBus(2, Duration.ofMinutes(1), 1);
+		eventBus.publish(1);
+		eventBus.publish("other");
+		eventBus.publish(2);
+		eventBus.publish(3);
+
+		StepVerifier.create(eventBus.subscribe(Integer.class, BufferOverflowStrategy.DROP_LATEST), 0)
+				.expectSubscription()
+				// let the replay fill the buffer before anything is requested
+				.expectNoEvent(Duration.ofMillis(10))
+				.thenRequest(1)
+				.expectNext(2)
+				.then(() -> eventBus.publish(4))
+				.thenRequest(1)
+				.expectNext(4)
+				.thenCancel()
+				.verify();
+
+		EventBusStats stats = eventBus.stats();
+		assertThat(stats.getPublished()).isEqualTo(5);
+		assertThat(stats.getDropped()).isEqualTo(1);
+		assertThat(stats.getReplayable()).isEqualTo(2);
+		assertThat(stats.getBuffered()).isZero();
+		assertThat(stats.getSubscribers()).isZero();
+	}
+
+	@Test
+	void streamPostChanges_shouldFanOutThePostChangesPublishedToTheEventBus() {
+		EventBus eventBus = new EventBus(4, Duration.ofMinutes(1), 4);
+		PostController controller = new PostController(mock(PostClient.class), eventBus);
+		PostChange created = new PostChange(PostChange.Type.CREATED, "post1", "subreddit1", "user1");
+		PostChange scored = new PostChange(PostChange.Type.SCORED, "post1", "subreddit1", "user1");
+		eventBus.publish(created);
+		eventBus.publish("other");
+
+		StepVerifier.create(controller.streamPostChanges())
+				.expectNext(created)
+				.then(() -> eventBus.publish(scored))
+				.expectNext(scored)
+				.thenCancel()
+				.verify();
+
+		assertThat(eventBus.stats().getSubscribers()).isZero();
+	}
+
+	@Test
+	void backendTarget_whenSetupTokenRotates_shouldMoveTheStreamWithoutResubscribing() {
+		AtomicReference<String> setupToken = new AtomicReference<>("token1");
+		Map<RSocketRequester, String> tokens = new ConcurrentHashMap<>();
+		Map<String, Sinks.Many<String>> streams = new ConcurrentHashMap<>();
+		List<String> cancelled = new CopyOnWriteArrayList<>();
+		BackendConnection connection = BackendConnection.setupAuthenticated(token -> {
+			RSocketRequester requester = mock(RSocketRequester.class, RETURNS_DEEP_STUBS);
+			tokens.put(requester, token);
+			return requester;
+		}, Mono.fromSupplier(setupToken::get), Duration.ofMillis(50));
+		BackendTarget target = new BackendTarget("localhost:7001", connection, Duration.ofMillis(10), Duration.ofMillis(10));
+		AtomicInteger resubscribed = new AtomicInteger();
+
+		Flux<String> changes = target.stream(requester -> {
+			String token = tokens.get(requester);
+			Sinks.Many<String> stream = Sinks.many().unicast().onBackpressureBuffer();
+			streams.put(token, stream);
+			return stream.asFlux().doOnCancel(() -> cancelled.add(token));
+		}, resubscribed::incrementAndGet);
+
+		StepVerifier.create(changes)
+				.then(() -> streams.get("token1").tryEmitNext("first"))
+				.expectNext("first")
+				.then(() -> {
+					setupToken.set("token2");
+					connection.requester().block();
+					streams.get("token1").tryEmitNext("drained");
+					streams.get("token2").tryEmitNext("rotated");
+				})
+				.expectNext("drained", "rotated")
+				.thenAwait(Duration.ofMillis(200))
+				.then(() -> {
+					assertThat(cancelled).containsExactly("token1");
+					assertThat(resubscribed).hasValue(0);
+					streams.get("token2").tryEmitError(new IllegalStateException("overflow"));
+				})
+				.thenAwait(Duration.ofMillis(200))
+				.then(() -> streams.get("token2").tryEmitNext("resubscribed"))
+				.expectNext("resubscribed")
+				.thenCancel()
+				.verify(Duration.ofSeconds(5));
+
+		assertThat(resubscribed).hasValue(1);
+	}
+
 }
@@ -0,0 +1,13 @@
+package com.redditclone.subredditservice.configuration;
+
+import lombok.Value;
+
+@Value
+public class JwtCacheStats {
+
+    long size;
+    long hits;
+    long misses;
+    long evictions;
+
+}
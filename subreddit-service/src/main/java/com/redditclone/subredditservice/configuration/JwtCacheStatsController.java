@@ -0,0 +1,18 @@
+package com.redditclone.subredditservice.configuration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Mono;
+
+@Controller
+@RequiredArgsConstructor
+public class JwtCacheStatsController {
+
+    private final CachingJwtDecoder jwtDecoder;
+
+    @MessageMapping("stats.jwt-cache")
+    public Mono<JwtCacheStats> jwtCacheStats() {
+        return Mono.fromSupplier(jwtDecoder::stats);
+    }
+}
@@ -0,0 +1,13 @@
+package com.redditclone.subredditservice.member;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface CustomMembershipRepository {
+
+    Mono<Boolean> upsert(Membership membership);
+
+    Flux<MembersCount> countMembersBySubreddit();
+
+    Mono<Boolean> existsUnmigrated();
+}
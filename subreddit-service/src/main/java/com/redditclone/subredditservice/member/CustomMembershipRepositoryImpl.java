@@ -0,0 +1,42 @@
+package com.redditclone.subredditservice.member;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class CustomMembershipRepositoryImpl implements CustomMembershipRepository {
+
+    private final ReactiveMongoOperations mongoOps;
+
+    @Override
+    public Mono<Boolean> upsert(Membership membership) {
+        return mongoOps
+                .upsert(
+                        query(where("username").is(membership.getUsername())
+                                .and("subredditName").is(membership.getSubredditName())),
+                        new Update().setOnInsert("joined", membership.getJoined()),
+                        Membership.class)
+                .map(result -> result.getUpsertedId() != null);
+    }
+
+    @Override
+    public Flux<MembersCount> countMembersBySubreddit() {
+        return mongoOps.aggregate(
+                newAggregation(group("subredditName").count().as("members")),
+                Membership.class,
+                MembersCount.class);
+    }
+
+    @Override
+    public Mono<Boolean> existsUnmigrated() {
+        return mongoOps.exists(new Query(), MembershipMigration.LEGACY_COLLECTION);
+    }
+}
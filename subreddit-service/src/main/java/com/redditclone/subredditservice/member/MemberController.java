@@ -0,0 +1,32 @@
+package com.redditclone.subredditservice.member;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Controller
+@RequiredArgsConstructor
+public class MemberController {
+
+    private final MemberService memberService;
+
+    @MessageMapping("is.{username}.member.of.{subredditName}")
+    public Mono<Boolean> isMemberOf(@DestinationVariable String username,
+                                    @DestinationVariable String subredditName) {
+        return memberService.isMemberOf(username, subredditName);
+    }
+
+    @MessageMapping("find.memberships.user.{username}")
+    public Flux<Membership> findSubredditsOfMember(@DestinationVariable String username,
+                                                   MembershipRequest request) {
+        return memberService.findSubredditsOfMember(username, request);
+    }
+
+    @MessageMapping("find.memberships.subreddit.{subredditName}")
+    public Flux<Membership> findMembersOfSubreddit(@DestinationVariable String subredditName) {
+        return memberService.findMembersOfSubreddit(subredditName);
+    }
+}
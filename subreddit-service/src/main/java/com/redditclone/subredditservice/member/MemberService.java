@@ -1,40 +1,63 @@
 package com.redditclone.subredditservice.member;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 @RequiredArgsConstructor
 public class MemberService {
 
-    private final MemberRepository memberRepo;
+    private final MembershipRepository membershipRepo;
 
-    public Mono<Member> findById(String username) {
-        return memberRepo.findById(username);
+    public Mono<Boolean> isMember(String username) {
+        return membershipRepo.existsByUsername(username);
     }
 
-    public Mono<Member> createMember(String username, String subredditName) {
-        return memberRepo.insert(Member.of(username, subredditName));
+    public Mono<Boolean> isMemberOf(String username, String subredditName) {
+        return membershipRepo.existsByUsernameAndSubredditName(username, subredditName);
     }
 
-    public Mono<Member> addSubredditToMembersJoinedSubreddits(Member member, String subredditName) {
-        return Mono.just(subredditName)
-                .filter(member::isNotMemberOf)
-                .switchIfEmpty(Mono.error(new AlreadyAMemberOfSubredditException(member.getUsername(), subredditName)))
-                .map(member::joinSubreddit)
-                .flatMap(memberRepo::save);
+    public Flux<Membership> findSubredditsOfMember(String username, MembershipRequest request) {
+        return membershipRepo.findByUsername(username, request.toPageable());
     }
 
-    public Mono<Member> removeSubredditFromMembersJoinedSubreddits(Member member, String subredditName) {
-        return Mono.just(subredditName)
-                .filter(member::isMemberOf)
-                .switchIfEmpty(Mono.error(new NotMemberOfSubredditException(member.getUsername(), subredditName)))
-                .map(member::leaveSubreddit)
-                .flatMap(memberRepo::save);
+    public Flux<Membership> findMembersOfSubreddit(String subredditName) {
+        return membershipRepo.findBySubredditName(subredditName);
     }
 
-    public Mono<Long> countMembersBySubredditName(String subredditName) {
-        return memberRepo.countByJoinedSubredditsContains(subredditName);
+    public Mono<Void> joinSubreddit(String username, String subredditName) {
+        return membershipRepo
+                .insert(Membership.of(username, subredditName))
+                .onErrorMap(
+                        ex -> ex instanceof DuplicateKeyException,
+                        ex -> new AlreadyAMemberOfSubredditException(username, subredditName))
+                .then();
+    }
+
+    public Mono<Void> leaveSubreddit(String username, String subredditName) {
+        return membershipRepo
+                .deleteByUsernameAndSubredditName(username, subredditName)
+                .filter(deleted -> deleted > 0)
+                .switchIfEmpty(Mono.error(new NotMemberOfSubredditException(username, subredditName)))
+                .then();
+    }
+
+    public Flux<MembersCount> countMembersBySubreddit() {
+        return membershipRepo.countMembersBySubreddit();
+    }
+
+    public Mono<Long> countMembers(String subredditName) {
+        return membershipRepo.countBySubredditName(subredditName);
+    }
+
+    /**
+     * Whether members of the former {@code subreddit_members} collection are left to migrate, so memberships are
+     * not complete yet.
+     */
+    public Mono<Boolean> hasUnmigratedMembers() {
+        return membershipRepo.existsUnmigrated();
     }
 }
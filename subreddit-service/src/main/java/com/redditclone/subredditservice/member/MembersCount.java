@@ -0,0 +1,12 @@
+package com.redditclone.subredditservice.member;
+
+import lombok.Value;
+import org.springframework.data.annotation.Id;
+
+@Value
+public class MembersCount {
+
+    @Id
+    String subredditName;
+    long members;
+}
@@ -0,0 +1,31 @@
+package com.redditclone.subredditservice.member;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Document("subreddit_memberships")
+@CompoundIndex(name = "username_subreddit", def = "{'username': 1, 'subredditName': 1}", unique = true)
+@CompoundIndex(name = "subreddit_username", def = "{'subredditName': 1, 'username': 1}")
+public class Membership {
+
+    @Id
+    String membershipId;
+    String username;
+    String subredditName;
+    Instant joined;
+
+    public static Membership of(String username, String subredditName) {
+        return new Membership(null, username, subredditName, Instant.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+}
@@ -0,0 +1,69 @@
+package com.redditclone.subredditservice.member;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Moves the joined subreddits of the former {@code subreddit_members} documents into one membership document
+ * each. A member document is removed once all of its memberships are stored, so the job can be stopped at any
+ * time and resumes where it left off on the next start. It runs on every start unless disabled, and does nothing
+ * once the former collection is empty.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "subreddits.membership-migration.enabled", havingValue = "true", matchIfMissing = true)
+public class MembershipMigration implements ApplicationRunner {
+
+    public static final String LEGACY_COLLECTION = "subreddit_members";
+
+    private final ReactiveMongoOperations mongoOps;
+    private final MembershipRepository membershipRepo;
+
+    @Value("${subreddits.membership-migration.batch-size:500}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate().subscribe(
+                count -> log.info("Migrated the memberships of {} members", count),
+                ex -> log.error("Membership migration failed", ex));
+    }
+
+    public Mono<Long> migrate() {
+        return migrateBatches(0L);
+    }
+
+    private Mono<Long> migrateBatches(long migrated) {
+        return mongoOps
+                .find(new Query().limit(batchSize), Document.class, LEGACY_COLLECTION)
+                .concatMap(this::migrateMember)
+                .count()
+                .flatMap(count -> count == 0
+                        ? Mono.just(migrated)
+                        : migrateBatches(migrated + count));
+    }
+
+    private Mono<Document> migrateMember(Document member) {
+        String username = member.getString("_id");
+        return Flux.fromIterable(member.getList("joinedSubreddits", String.class, List.of()))
+                .concatMap(subredditName -> membershipRepo.upsert(Membership.of(username, subredditName)))
+                .then(mongoOps.remove(query(where("_id").is(username)), LEGACY_COLLECTION))
+                .thenReturn(member);
+    }
+}
@@ -0,0 +1,21 @@
+package com.redditclone.subredditservice.member;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface MembershipRepository extends ReactiveMongoRepository<Membership, String>, CustomMembershipRepository {
+
+    Mono<Boolean> existsByUsername(String username);
+
+    Mono<Boolean> existsByUsernameAndSubredditName(String username, String subredditName);
+
+    Mono<Long> deleteByUsernameAndSubredditName(String username, String subredditName);
+
+    Flux<Membership> findByUsername(String username, Pageable pageable);
+
+    Flux<Membership> findBySubredditName(String subredditName);
+
+    Mono<Long> countBySubredditName(String subredditName);
+}
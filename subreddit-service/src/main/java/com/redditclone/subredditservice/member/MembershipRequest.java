@@ -0,0 +1,28 @@
+package com.redditclone.subredditservice.member;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Optional;
+
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MembershipRequest {
+
+    Integer page;
+    Integer size;
+
+    public Pageable toPageable() {
+        return PageRequest.of(
+                Optional.ofNullable(page).orElse(0),
+                Optional.ofNullable(size).orElse(10),
+                Sort.by(Sort.Direction.DESC, "joined", "_id")
+        );
+    }
+}
@@ -0,0 +1,15 @@
+package com.redditclone.subredditservice.subreddit;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface CustomSubredditRepository {
+
+    Flux<Subreddit> findPage(SubredditRequest request);
+
+    Mono<Void> incrementMembers(String subredditName, long delta);
+
+    Mono<Subreddit> updateContent(Subreddit subreddit);
+
+    Mono<Boolean> correctMembers(String subredditName, long observed, long actual);
+}
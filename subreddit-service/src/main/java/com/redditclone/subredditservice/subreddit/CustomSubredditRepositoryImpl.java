@@ -0,0 +1,77 @@
+package com.redditclone.subredditservice.subreddit;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class CustomSubredditRepositoryImpl implements CustomSubredditRepository {
+
+    private final ReactiveMongoOperations mongoOps;
+
+    @Override
+    public Flux<Subreddit> findPage(SubredditRequest request) {
+        return Flux.defer(() -> mongoOps.find(pageQuery(request), Subreddit.class));
+    }
+
+    @Override
+    public Mono<Void> incrementMembers(String subredditName, long delta) {
+        return mongoOps
+                .updateFirst(query(where("_id").is(subredditName)), new Update().inc("members", delta), Subreddit.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Subreddit> updateContent(Subreddit subreddit) {
+        return mongoOps
+                .updateFirst(
+                        query(where("_id").is(subreddit.getName())),
+                        Update.update("title", subreddit.getTitle())
+                                .set("description", subreddit.getDescription())
+                                .set("topics", subreddit.getTopics())
+                                .set("edited", subreddit.getEdited()),
+                        Subreddit.class)
+                .thenReturn(subreddit);
+    }
+
+    @Override
+    public Mono<Boolean> correctMembers(String subredditName, long observed, long actual) {
+        return mongoOps
+                .updateFirst(
+                        query(where("_id").is(subredditName).and("members").is(observed)),
+                        Update.update("members", actual),
+                        Subreddit.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+
+    private static Query pageQuery(SubredditRequest request) {
+        return request.toAfter()
+                .map(after -> query(seek(request.toSort(), after))
+                        .with(request.toSort())
+                        .limit(request.toSize()))
+                .orElseGet(() -> new Query().with(request.toPageable()));
+    }
+
+    private static Criteria seek(Sort sort, SubredditCursor after) {
+        Sort.Order order = sort.iterator().next();
+        if (order.getProperty().equals(SubredditRequest.ID)) {
+            return beyond(where(SubredditRequest.ID), order, after.getName());
+        }
+        return new Criteria().orOperator(
+                beyond(where(order.getProperty()), order, after.getKey()),
+                beyond(where(order.getProperty()).is(after.getKey()).and(SubredditRequest.ID), order, after.getName())
+        );
+    }
+
+    private static Criteria beyond(Criteria criteria, Sort.Order order, Object value) {
+        return order.isAscending() ? criteria.gt(value) : criteria.lt(value);
+    }
+}
@@ -0,0 +1,10 @@
+package com.redditclone.subredditservice.subreddit;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public static final String INVALID_CURSOR = "Invalid subreddit cursor %s";
+
+    public InvalidCursorException(String cursor, Throwable cause) {
+        super(String.format(INVALID_CURSOR, cursor), cause);
+    }
+}
@@ -0,0 +1,72 @@
+package com.redditclone.subredditservice.subreddit;
+
+import com.redditclone.subredditservice.member.MemberService;
+import com.redditclone.subredditservice.member.MembersCount;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Recounts the members of every subreddit and corrects counters that drifted from the memberships. One aggregation
+ * finds the subreddits whose counter looks off. Each of them is then read again and recounted after that read, and
+ * its counter is only corrected if it has not changed since. A join or leave that completes between the read and
+ * the correction fails the correction instead of being overwritten. One that has written its membership but not yet
+ * its counter increment when the subreddit is recounted can still be counted twice, until the next run. A run is
+ * skipped while members of the former collection are left to migrate, as the memberships are incomplete until then.
+ * It overwrites counters, so it only runs when enabled.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "subreddits.members-reconciliation.enabled", havingValue = "true")
+public class MembersCountReconciler {
+
+    private final SubredditRepository subredditRepo;
+    private final MemberService memberService;
+    private final SubredditChanges subredditChanges;
+
+    @Scheduled(
+            initialDelayString = "${subreddits.members-reconciliation.interval:PT1H}",
+            fixedDelayString = "${subreddits.members-reconciliation.interval:PT1H}")
+    public void reconcile() {
+        Long corrected = reconcileMembers()
+                .onErrorResume(ex -> {
+                    log.error("Members count reconciliation failed", ex);
+                    return Mono.empty();
+                })
+                .block();
+        log.info("Corrected the members count of {} subreddits", corrected);
+    }
+
+    public Mono<Long> reconcileMembers() {
+        return memberService
+                .hasUnmigratedMembers()
+                .flatMap(unmigrated -> unmigrated ? skip() : recount());
+    }
+
+    private Mono<Long> skip() {
+        log.warn("Skipped the members count reconciliation, memberships are still being migrated");
+        return Mono.just(0L);
+    }
+
+    private Mono<Long> recount() {
+        return memberService
+                .countMembersBySubreddit()
+                .collectMap(MembersCount::getSubredditName, MembersCount::getMembers)
+                .flatMapMany(counts -> subredditRepo
+                        .findAll()
+                        .filter(subreddit -> subreddit.getMembers() != counts.getOrDefault(subreddit.getName(), 0L)))
+                .flatMap(drifted -> subredditRepo.findById(drifted.getName()))
+                .flatMap(subreddit -> memberService
+                        .countMembers(subreddit.getName())
+                        .filter(members -> members != subreddit.getMembers())
+                        .flatMap(members -> subredditRepo.correctMembers(subreddit.getName(), subreddit.getMembers(), members))
+                        .filter(corrected -> corrected)
+                        .doOnNext(corrected -> subredditChanges.publish(
+                                new SubredditChange(SubredditChange.Type.MEMBERS, subreddit.getName()))))
+                .count();
+    }
+}
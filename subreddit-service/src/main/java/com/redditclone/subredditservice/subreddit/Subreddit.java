@@ -3,8 +3,11 @@ package com.redditclone.subredditservice.subreddit;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -14,8 +17,11 @@ import java.util.Set;
 
 @Data
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @Document("subreddits")
+@CompoundIndex(name = "created", def = "{'created': -1, '_id': -1}")
+@CompoundIndex(name = "members", def = "{'members': -1, '_id': -1}")
 public class Subreddit {
 
     @Id
@@ -27,6 +33,8 @@ public class Subreddit {
     Instant edited;
     Set<String> topics;
     long members;
+    @Transient
+    String cursor;
 
     public static Subreddit of(String name, String title, String description, String author, Set<String> topics) {
         return new Subreddit(
@@ -37,7 +45,8 @@ public class Subreddit {
                 Instant.now().truncatedTo(ChronoUnit.MILLIS),
                 null,
                 new LinkedHashSet<>(topics),
-                0L
+                0L,
+                null
         );
     }
 
@@ -51,8 +60,13 @@ public class Subreddit {
         );
     }
 
-    public Subreddit updateMembersCountWith(Long members) {
-        this.members = members;
+    public Subreddit incrementMembers(long delta) {
+        members += delta;
+        return this;
+    }
+
+    public Subreddit withCursor(String cursor) {
+        this.cursor = cursor;
         return this;
     }
 
@@ -0,0 +1,17 @@
+package com.redditclone.subredditservice.subreddit;
+
+import lombok.Value;
+
+/**
+ * A compact notice that a subreddit changed, for consumers that cache subreddits.
+ */
+@Value
+public class SubredditChange {
+
+    Type type;
+    String subredditName;
+
+    public enum Type {
+        CREATED, UPDATED, MEMBERS
+    }
+}
@@ -23,6 +23,11 @@ public class SubredditController {
         return subredditService.findSubredditByName(subredditName);
     }
 
+    @MessageMapping("stream.changes")
+    public Flux<SubredditChange> streamChanges() {
+        return subredditService.streamChanges();
+    }
+
     @MessageMapping("create.subreddit.by.{username}")
     public Mono<Subreddit> createSubreddit(@DestinationVariable String username,
                                            CreateSubreddit create) {
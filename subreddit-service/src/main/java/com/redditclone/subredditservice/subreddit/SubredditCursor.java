@@ -0,0 +1,45 @@
+package com.redditclone.subredditservice.subreddit;
+
+import lombok.Value;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonWriterSettings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a subreddit listing: the sort key of the last subreddit seen plus its name as tiebreaker.
+ */
+@Value
+public class SubredditCursor {
+
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    Object key;
+    String name;
+
+    public static SubredditCursor of(Object key, String name) {
+        return new SubredditCursor(key, name);
+    }
+
+    public static SubredditCursor decode(String token) {
+        try {
+            Document decoded = Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            String name = decoded.getString("id");
+            if (name == null || !decoded.containsKey("key")) {
+                throw new IllegalArgumentException(decoded.toJson());
+            }
+            return new SubredditCursor(decoded.get("key"), name);
+        } catch (IllegalArgumentException | ClassCastException | JsonParseException ex) {
+            throw new InvalidCursorException(token, ex);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(new Document("key", key).append("id", name).toJson(JSON).getBytes(StandardCharsets.UTF_8));
+    }
+}
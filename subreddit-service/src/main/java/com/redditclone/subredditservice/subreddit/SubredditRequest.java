@@ -9,35 +9,59 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
+import java.util.Date;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Data
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class SubredditRequest {
 
+    public static final String ID = "_id";
+
     Integer page;
     Integer size;
     SortBy sort;
+    String after;
 
     @Getter
     public enum SortBy {
-        NEW(Sort.by("created").descending()),
-        OLD(Sort.by("created").ascending()),
-        TOP(Sort.by("members").descending());
+        NEW(Sort.by(Sort.Direction.DESC, "created", ID), subreddit -> Date.from(subreddit.getCreated())),
+        OLD(Sort.by(Sort.Direction.ASC, "created", ID), subreddit -> Date.from(subreddit.getCreated())),
+        TOP(Sort.by(Sort.Direction.DESC, "members", ID), Subreddit::getMembers);
 
         Sort sort;
+        Function<Subreddit, Object> key;
 
-        SortBy(Sort sort) {
+        SortBy(Sort sort, Function<Subreddit, Object> key) {
             this.sort = sort;
+            this.key = key;
         }
     }
 
     public Pageable toPageable() {
         return PageRequest.of(
                 Optional.ofNullable(page).orElse(0),
-                Optional.ofNullable(size).orElse(10),
-                Optional.ofNullable(sort).map(SortBy::getSort).orElse(Sort.unsorted())
+                toSize(),
+                toSort()
         );
     }
+
+    public Sort toSort() {
+        return Optional.ofNullable(sort).map(SortBy::getSort).orElse(Sort.by(ID));
+    }
+
+    public int toSize() {
+        return Optional.ofNullable(size).orElse(10);
+    }
+
+    public Optional<SubredditCursor> toAfter() {
+        return Optional.ofNullable(after).map(SubredditCursor::decode);
+    }
+
+    public String cursorOf(Subreddit subreddit) {
+        Object key = Optional.ofNullable(sort).map(it -> it.getKey().apply(subreddit)).orElse(null);
+        return SubredditCursor.of(key, subreddit.getName()).encode();
+    }
 }
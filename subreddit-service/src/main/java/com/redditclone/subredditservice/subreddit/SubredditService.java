@@ -14,9 +14,12 @@ public class SubredditService {
 
     private final SubredditRepository subredditRepo;
     private final MemberService memberService;
+    private final SubredditChanges subredditChanges;
 
     public Flux<Subreddit> findSubreddits(SubredditRequest request) {
-        return subredditRepo.findAllBy(request.toPageable());
+        return subredditRepo
+                .findPage(request)
+                .map(subreddit -> subreddit.withCursor(request.cursorOf(subreddit)));
     }
 
     public Mono<Subreddit> findSubredditByName(String subredditName) {
@@ -25,6 +28,10 @@ public class SubredditService {
                 .switchIfEmpty(Mono.error(new SubredditNotFoundException(subredditName)));
     }
 
+    public Flux<SubredditChange> streamChanges() {
+        return subredditChanges.stream();
+    }
+
     public Mono<Subreddit> createSubreddit(String username, CreateSubreddit create) {
         return subredditRepo
                 .insert(Subreddit.from(username, create))
@@ -32,53 +39,37 @@ public class SubredditService {
                         ex -> ex instanceof DuplicateKeyException,
                         ex -> new SubredditAlreadyPresentException(create.getName(), ex))
                 .flatMap(subreddit -> memberService
-                        .findById(username)
-                        .flatMap(member -> memberService.addSubredditToMembersJoinedSubreddits(member, subreddit.getName()))
-                        .switchIfEmpty(Mono.defer(() -> memberService.createMember(username, subreddit.getName())))
-                        .thenReturn(subreddit))
-                .flatMap(this::updateSubredditMembersCount);
-    }
-
-    private Mono<Subreddit> updateSubredditMembersCount(Subreddit subreddit) {
-        return memberService
-                .countMembersBySubredditName(subreddit.getName())
-                .map(subreddit::updateMembersCountWith)
-                .flatMap(subredditRepo::save);
+                        .joinSubreddit(username, subreddit.getName())
+                        .then(subredditRepo.incrementMembers(subreddit.getName(), 1))
+                        .then(Mono.fromSupplier(() -> subreddit.incrementMembers(1))))
+                .doOnNext(subreddit -> subredditChanges.publish(new SubredditChange(SubredditChange.Type.CREATED, subreddit.getName())));
     }
 
     public Mono<Subreddit> editSubreddit(String subredditName, String username, EditSubreddit edit) {
         return findSubredditByName(subredditName)
                 .filter(subreddit -> subreddit.getCreator().equals(username))
                 .map(subreddit -> subreddit.editWith(edit))
-                .flatMap(subredditRepo::save)
+                .flatMap(subredditRepo::updateContent)
+                .doOnNext(subreddit -> subredditChanges.publish(new SubredditChange(SubredditChange.Type.UPDATED, subreddit.getName())))
                 .switchIfEmpty(Mono.error(new NotCreatorOfSubredditException(username, subredditName)));
     }
 
     public Mono<Void> addSubredditMember(String username, String subredditName) {
-        return memberService
-                .findById(username)
-                .flatMap(member -> findSubredditByName(subredditName)
-                        .flatMap(subreddit -> memberService
-                                .addSubredditToMembersJoinedSubreddits(member, subreddit.getName())
-                                .thenReturn(subreddit)))
-                .switchIfEmpty(Mono.defer(() -> findSubredditByName(subredditName)
-                        .flatMap(subreddit -> memberService
-                                .createMember(username, subreddit.getName())
-                                .thenReturn(subreddit))))
-                .flatMap(this::updateSubredditMembersCount)
-                .then();
+        return findSubredditByName(subredditName)
+                .flatMap(subreddit -> memberService.joinSubreddit(username, subreddit.getName()))
+                .then(subredditRepo.incrementMembers(subredditName, 1))
+                .doOnSuccess(updated -> subredditChanges.publish(new SubredditChange(SubredditChange.Type.MEMBERS, subredditName)));
     }
 
     public Mono<Void> removeSubredditMember(String username, String subredditName) {
         return memberService
-                .findById(username)
+                .isMember(username)
+                .filter(member -> member)
                 .switchIfEmpty(Mono.error(new MemberNotFoundException(username)))
-                .flatMap(member -> findSubredditByName(subredditName)
-                        .flatMap(subreddit -> memberService
-                                .removeSubredditFromMembersJoinedSubreddits(member, subreddit.getName())
-                                .thenReturn(subreddit)))
-                .flatMap(this::updateSubredditMembersCount)
-                .then();
+                .flatMap(member -> findSubredditByName(subredditName))
+                .flatMap(subreddit -> memberService.leaveSubreddit(username, subreddit.getName()))
+                .then(subredditRepo.incrementMembers(subredditName, -1))
+                .doOnSuccess(updated -> subredditChanges.publish(new SubredditChange(SubredditChange.Type.MEMBERS, subredditName)));
     }
 
 }
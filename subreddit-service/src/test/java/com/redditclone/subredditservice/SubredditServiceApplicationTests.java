@@ -3,12 +3,16 @@ package com.redditclone.subredditservice;
 import com.redditclone.subredditservice.member.*;
 import com.redditclone.subredditservice.subreddit.*;
 import io.rsocket.metadata.WellKnownMimeType;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.MediaType;
 import org.springframework.messaging.rsocket.RSocketRequester;
 import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest;
@@ -18,15 +22,19 @@ import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
 import org.springframework.security.rsocket.metadata.BearerTokenAuthenticationEncoder;
 import org.springframework.security.rsocket.metadata.BearerTokenMetadata;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -45,7 +53,13 @@ public class SubredditServiceApplicationTests {
     private SubredditRepository subredditRepo;
 
     @Autowired
-    private MemberRepository memberRepo;
+    private MembershipRepository membershipRepo;
+
+    @Autowired
+    private MembersCountReconciler reconciler;
+
+    @Autowired
+    private ReactiveMongoOperations mongoOps;
 
     @Autowired
     private OAuth2 oAuth2;
@@ -53,7 +67,7 @@ public class SubredditServiceApplicationTests {
     @BeforeEach
     public void setup() {
         subredditRepo.deleteAll().block();
-        memberRepo.deleteAll().block();
+        membershipRepo.deleteAll().block();
     }
 
     private RSocketRequester tcp() {
@@ -63,6 +77,13 @@ public class SubredditServiceApplicationTests {
                 .tcp("localhost", port);
     }
 
+    private Mono<List<String>> joinedSubreddits(String username) {
+        return membershipRepo
+                .findByUsername(username, Pageable.unpaged())
+                .map(Membership::getSubredditName)
+                .collectList();
+    }
+
     @Test
     public void findSubreddits_whenNoJwt_shouldReturnError() {
 
@@ -97,6 +118,35 @@ public class SubredditServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void findSubreddits_whenAfterCursor_shouldReturnTheSubredditsFollowingTheCursor() {
+
+        Map.of("test1", 5L, "test2", 5L, "test3", 1L).forEach((name, members) -> subredditRepo
+                .save(Subreddit.of(name, "title", "description", "author", Set.of()).incrementMembers(members))
+                .block());
+
+        String token = oAuth2.getAccessTokenForUsername().block();
+
+        Subreddit first = tcp()
+                .route("find.subreddits")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .data(SubredditRequest.builder().sort(SubredditRequest.SortBy.TOP).size(1).build())
+                .retrieveFlux(Subreddit.class)
+                .blockFirst();
+
+        Flux<Subreddit> subreddits = tcp()
+                .route("find.subreddits")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .data(SubredditRequest.builder().sort(SubredditRequest.SortBy.TOP).size(2).after(first.getCursor()).build())
+                .retrieveFlux(Subreddit.class);
+
+        StepVerifier
+                .create(subreddits)
+                .expectNextMatches(it -> it.getName().equals("test1"))
+                .expectNextMatches(it -> it.getName().equals("test3"))
+                .verifyComplete();
+    }
+
     @Test
     public void findSubreddits_whenSortByNew_shouldReturnResultsSortedByCreatedDesc() {
 
@@ -159,6 +209,44 @@ public class SubredditServiceApplicationTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void findSubreddits_whenSortByOldAfterCursor_shouldReturnTheNewerSubredditsInCreatedAsc() {
+
+        Subreddit newest = Subreddit.of("test1", "title", "description", "author", Set.of());
+        newest.setCreated(LocalDate.of(2020, Month.OCTOBER, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        subredditRepo.save(newest).block();
+
+        Subreddit oldest = Subreddit.of("test2", "title", "description", "author", Set.of());
+        oldest.setCreated(LocalDate.of(2019, Month.DECEMBER, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        subredditRepo.save(oldest).block();
+
+        Subreddit middle = Subreddit.of("test3", "title", "description", "author", Set.of());
+        middle.setCreated(LocalDate.of(2020, Month.MARCH, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        subredditRepo.save(middle).block();
+
+        String token = oAuth2.getAccessTokenForUsername().block();
+
+        Subreddit first = tcp()
+                .route("find.subreddits")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .data(SubredditRequest.builder().sort(SubredditRequest.SortBy.OLD).size(1).build())
+                .retrieveFlux(Subreddit.class)
+                .blockFirst();
+
+        Flux<Subreddit> subreddits = tcp()
+                .route("find.subreddits")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .data(SubredditRequest.builder().sort(SubredditRequest.SortBy.OLD).size(2).after(first.getCursor()).build())
+                .retrieveFlux(Subreddit.class);
+
+        assertThat(first.getName()).isEqualTo("test2");
+        StepVerifier
+                .create(subreddits)
+                .expectNextMatches(it -> it.getName().equals("test3"))
+                .expectNextMatches(it -> it.getName().equals("test1"))
+                .verifyComplete();
+    }
+
     @Test
     public void findSubreddits_whenSortByTop_shouldReturnResultsSortedByMembersDesc() {
 
@@ -298,40 +386,38 @@ public class SubredditServiceApplicationTests {
 
         String token = oAuth2.getAccessTokenForUsername().block();
 
-        Mono<Member> author = tcp()
+        Mono<List<String>> author = tcp()
                 .route("create.subreddit.by.{username}", "reddit-user")
                 .metadata(oAuth2.addTokenToMetadata(token))
                 .data(new CreateSubreddit("test", "title", "description", Set.of("topic")))
                 .retrieveMono(Subreddit.class)
-                .flatMap(subreddit -> memberRepo.findById("reddit-user"));
+                .flatMap(subreddit -> joinedSubreddits("reddit-user"));
 
         StepVerifier
                 .create(author)
-                .expectNextMatches(it ->
-                        it.getUsername().equals("reddit-user") &&
-                        it.getJoinedSubreddits().contains("test"))
+                .expectNextMatches(it -> it.contains("test"))
                 .verifyComplete();
     }
 
     @Test
     public void createSubreddit_whenCreatorIsAlreadyAMemberOfOtherSubreddits_shouldAddSubredditToCreatorsJoinedSubreddits() {
 
-        memberRepo
-                .save(Member.of("reddit-user", "test1"))
+        membershipRepo
+                .save(Membership.of("reddit-user", "test1"))
                 .block();
 
         String token = oAuth2.getAccessTokenForUsername().block();
 
-        Mono<Member> member = tcp()
+        Mono<List<String>> member = tcp()
                 .route("create.subreddit.by.{username}", "reddit-user")
                 .metadata(oAuth2.addTokenToMetadata(token))
                 .data(new CreateSubreddit("test2", "title", "description", Set.of("topic")))
                 .retrieveMono(Subreddit.class)
-                .flatMap(subreddit -> memberRepo.findById("reddit-user"));
+                .flatMap(subreddit -> joinedSubreddits("reddit-user"));
 
         StepVerifier
                 .create(member)
-                .expectNextMatches(it -> it.getJoinedSubreddits().containsAll(Set.of("test1", "test2")))
+                .expectNextMatches(it -> it.containsAll(Set.of("test1", "test2")))
                 .verifyComplete();
     }
 
@@ -441,8 +527,8 @@ public class SubredditServiceApplicationTests {
     @Test
     public void addSubredditMember_whenUserIsAlreadyAMemberOfOtherSubreddits_shouldJoinThatSubreddit() {
 
-        memberRepo
-                .save(Member.of("reddit-user", "test1"))
+        membershipRepo
+                .save(Membership.of("reddit-user", "test1"))
                 .block();
 
         subredditRepo
@@ -451,18 +537,17 @@ public class SubredditServiceApplicationTests {
 
         String token = oAuth2.getAccessTokenForUsername().block();
 
-        Mono<Member> joined = tcp()
+        Mono<List<String>> joined = tcp()
                 .route("add.{username}.to.{subredditName}.members", "reddit-user", "test2")
                 .metadata(oAuth2.addTokenToMetadata(token))
                 .retrieveMono(Void.class)
-                .then(Mono.defer(() -> memberRepo.findById("reddit-user")));
+                .then(Mono.defer(() -> joinedSubreddits("reddit-user")));
 
         StepVerifier
                 .create(joined)
                 .assertNext(it -> {
-                    assertThat(it.getUsername()).isEqualTo("reddit-user");
-                    assertThat(it.getJoinedSubreddits()).containsOnlyOnce("test1");
-                    assertThat(it.getJoinedSubreddits()).containsOnlyOnce("test2");
+                    assertThat(it).containsOnlyOnce("test1");
+                    assertThat(it).containsOnlyOnce("test2");
                 })
                 .verifyComplete();
     }
@@ -470,10 +555,10 @@ public class SubredditServiceApplicationTests {
     @Test
     public void addSubredditMember_whenUserIsAlreadyAMemberOfOtherSubreddits_shouldIncreaseSubredditMembersCountByOne() {
 
-        memberRepo.save(Member.of("another-reddit-user", "test2")).block();
+        membershipRepo.save(Membership.of("another-reddit-user", "test2")).block();
 
-        Subreddit subreddit = memberRepo
-                .save(Member.of("reddit-user", "test1"))
+        Subreddit subreddit = membershipRepo
+                .save(Membership.of("reddit-user", "test1"))
                 .then(Mono.just(Subreddit.of("test2", "title", "description", "another-reddit-user", Set.of("topic"))))
                 .doOnNext(it -> it.setMembers(1L))
                 .flatMap(subredditRepo::save)
@@ -499,8 +584,8 @@ public class SubredditServiceApplicationTests {
     @Test
     public void addSubredditMember_whenUserIsAlreadyAMemberOfThatSubreddit_shouldReturnError() {
 
-        memberRepo
-                .save(Member.of("reddit-user", "test"))
+        membershipRepo
+                .save(Membership.of("reddit-user", "test"))
                 .block();
 
         subredditRepo
@@ -530,17 +615,16 @@ public class SubredditServiceApplicationTests {
 
         String token = oAuth2.getAccessTokenForUsername().block();
 
-        Mono<Member> joined = tcp()
+        Mono<List<String>> joined = tcp()
                 .route("add.{username}.to.{subredditName}.members", "reddit-user", "test")
                 .metadata(oAuth2.addTokenToMetadata(token))
                 .retrieveMono(Void.class)
-                .then(Mono.defer(() -> memberRepo.findById("reddit-user")));
+                .then(Mono.defer(() -> joinedSubreddits("reddit-user")));
 
         StepVerifier
                 .create(joined)
                 .assertNext(it -> {
-                    assertThat(it.getUsername()).isEqualTo("reddit-user");
-                    assertThat(it.getJoinedSubreddits()).containsOnlyOnce("test");
+                    assertThat(it).containsOnlyOnce("test");
                 })
                 .verifyComplete();
     }
@@ -548,7 +632,7 @@ public class SubredditServiceApplicationTests {
     @Test
     public void addSubredditMember_whenUserIsNotAMemberOfAnySubreddits_shouldIncreaseSubredditMembersCountByOne() {
 
-        memberRepo.save(Member.of("another-reddit-user", "test")).block();
+        membershipRepo.save(Membership.of("another-reddit-user", "test")).block();
 
         Subreddit sub = Subreddit.of("test", "title", "description", "another-reddit-user", Set.of("topic"));
         sub.setMembers(1L);
@@ -603,8 +687,8 @@ public class SubredditServiceApplicationTests {
     @Test
     public void removeSubredditMember_whenUserIsMemberOfSubreddit_shouldLeaveThatSubreddit() {
 
-        memberRepo
-                .save(Member.of("reddit-user", "test"))
+        membershipRepo
+                .save(Membership.of("reddit-user", "test"))
                 .block();
 
         subredditRepo
@@ -613,17 +697,16 @@ public class SubredditServiceApplicationTests {
 
         String token = oAuth2.getAccessTokenForUsername().block();
 
-        Mono<Member> left = tcp()
+        Mono<List<String>> left = tcp()
                 .route("remove.{username}.from.{subredditName}.members", "reddit-user", "test")
                 .metadata(oAuth2.addTokenToMetadata(token))
                 .retrieveMono(Void.class)
-                .then(Mono.defer(() -> memberRepo.findById("reddit-user")));
+                .then(Mono.defer(() -> joinedSubreddits("reddit-user")));
 
         StepVerifier
                 .create(left)
                 .assertNext(it -> {
-                    assertThat(it.getUsername()).isEqualTo("reddit-user");
-                    assertThat(it.getJoinedSubreddits()).doesNotContain("test");
+                    assertThat(it).doesNotContain("test");
                 })
                 .verifyComplete();
     }
@@ -631,8 +714,8 @@ public class SubredditServiceApplicationTests {
     @Test
     public void removeSubredditMember_whenUserIsMemberOfSubreddit_shouldDecreaseSubredditMembersCountByOne() {
 
-        Subreddit subreddit = memberRepo
-                .save(Member.of("reddit-user", "test"))
+        Subreddit subreddit = membershipRepo
+                .save(Membership.of("reddit-user", "test"))
                 .then(Mono.just(Subreddit.of("test", "title", "description", "another-reddit-user", Set.of("topic"))))
                 .doOnNext(it -> it.setMembers(1L))
                 .flatMap(subredditRepo::save)
@@ -658,8 +741,8 @@ public class SubredditServiceApplicationTests {
     @Test
     public void removeSubredditMember_whenUserIsNotAMemberOfThatSubreddit_shouldReturnError() {
 
-        memberRepo
-                .save(Member.of("reddit-user", "test1"))
+        membershipRepo
+                .save(Membership.of("reddit-user", "test1"))
                 .block();
 
         subredditRepo
@@ -700,8 +783,8 @@ public class SubredditServiceApplicationTests {
     @Test
     public void removeSubredditMember_whenSubredditNotFound_shouldReturnError() {
 
-        memberRepo
-                .save(Member.of("reddit-user", "test"))
+        membershipRepo
+                .save(Membership.of("reddit-user", "test"))
                 .block();
 
         String token = oAuth2.getAccessTokenForUsername().block();
@@ -718,6 +801,112 @@ public class SubredditServiceApplicationTests {
                 .verify();
     }
 
+    @Test
+    public void reconcileMembers_shouldCorrectDriftedMembersCounts() {
+
+        membershipRepo.save(Membership.of("reddit-user", "test1")).block();
+        membershipRepo.save(Membership.of("another-reddit-user", "test1")).block();
+
+        subredditRepo.save(Subreddit.of("test1", "title", "description", "reddit-user", Set.of()).incrementMembers(7)).block();
+        subredditRepo.save(Subreddit.of("test2", "title", "description", "reddit-user", Set.of()).incrementMembers(3)).block();
+        subredditRepo.save(Subreddit.of("test3", "title", "description", "reddit-user", Set.of())).block();
+
+        StepVerifier
+                .create(reconciler.reconcileMembers())
+                .expectNext(2L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(subredditRepo.findAll().collectMap(Subreddit::getName, Subreddit::getMembers))
+                .expectNext(Map.of("test1", 2L, "test2", 0L, "test3", 0L))
+                .verifyComplete();
+    }
+
+    @Test
+    public void reconcileMembers_whenMembersAreLeftToMigrate_shouldNotCorrectTheMembersCounts() {
+
+        mongoOps.dropCollection(MembershipMigration.LEGACY_COLLECTION).block();
+        mongoOps.insert(new Document("_id", "reddit-user").append("joinedSubreddits", List.of("test1")),
+                MembershipMigration.LEGACY_COLLECTION).block();
+        subredditRepo.save(Subreddit.of("test1", "title", "description", "reddit-user", Set.of()).incrementMembers(1)).block();
+
+        StepVerifier
+                .create(reconciler.reconcileMembers())
+                .expectNext(0L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(subredditRepo.findById("test1").map(Subreddit::getMembers))
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(new MembershipMigration(mongoOps, membershipRepo).migrate().then(reconciler.reconcileMembers()))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void migrateMemberships_shouldMoveJoinedSubredditsIntoMembershipDocuments() {
+
+        mongoOps.dropCollection(MembershipMigration.LEGACY_COLLECTION).block();
+        mongoOps.insert(new Document("_id", "reddit-user").append("joinedSubreddits", List.of("test1", "test2")),
+                MembershipMigration.LEGACY_COLLECTION).block();
+        mongoOps.insert(new Document("_id", "another-reddit-user").append("joinedSubreddits", List.of("test1")),
+                MembershipMigration.LEGACY_COLLECTION).block();
+        membershipRepo.save(Membership.of("reddit-user", "test1")).block();
+
+        MembershipMigration migration = new MembershipMigration(mongoOps, membershipRepo);
+        ReflectionTestUtils.setField(migration, "batchSize", 1);
+
+        StepVerifier
+                .create(migration.migrate())
+                .expectNext(2L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(joinedSubreddits("reddit-user"))
+                .assertNext(it -> assertThat(it).containsExactlyInAnyOrder("test1", "test2"))
+                .verifyComplete();
+
+        StepVerifier
+                .create(joinedSubreddits("another-reddit-user"))
+                .expectNext(List.of("test1"))
+                .verifyComplete();
+
+        StepVerifier
+                .create(mongoOps.count(new Query(), MembershipMigration.LEGACY_COLLECTION))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void streamChanges_whenMemberAdded_shouldPublishMembersChange() {
+
+        subredditRepo
+                .save(Subreddit.of("test", "title", "description", "another-reddit-user", Set.of("topic")))
+                .block();
+
+        String token = oAuth2.getAccessTokenForUsername().block();
+
+        Flux<SubredditChange> changes = tcp()
+                .route("stream.changes")
+                .metadata(oAuth2.addTokenToMetadata(token))
+                .retrieveFlux(SubredditChange.class);
+
+        Mono<Void> joined = Mono.delay(Duration.ofMillis(500))
+                .then(tcp()
+                        .route("add.{username}.to.{subredditName}.members", "reddit-user", "test")
+                        .metadata(oAuth2.addTokenToMetadata(token))
+                        .retrieveMono(Void.class));
+
+        StepVerifier
+                .create(changes.take(1))
+                .then(joined::subscribe)
+                .expectNext(new SubredditChange(SubredditChange.Type.MEMBERS, "test"))
+                .verifyComplete();
+    }
+
     @TestConfiguration
     public static class OAuth2 {
 
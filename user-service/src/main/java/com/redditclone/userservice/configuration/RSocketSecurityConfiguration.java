@@ -9,9 +9,13 @@ import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHa
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.rsocket.RSocketSecurity;
 import org.springframework.security.messaging.handler.invocation.reactive.AuthenticationPrincipalArgumentResolver;
-import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
-import org.springframework.security.oauth2.jwt.ReactiveJwtDecoders;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
 import org.springframework.security.rsocket.core.PayloadSocketAcceptorInterceptor;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.file.Path;
+import java.time.Duration;
 
 @Configuration
 public class RSocketSecurityConfiguration {
@@ -28,8 +32,17 @@ public class RSocketSecurityConfiguration {
     }
 
     @Bean
-    ReactiveJwtDecoder jwtDecoder(@Value("${oauth2.resource-server.oidc-issuer-location}") String oidcIssuerLocation) {
-        return ReactiveJwtDecoders.fromOidcIssuerLocation(oidcIssuerLocation);
+    CachingJwtDecoder jwtDecoder(WebClient.Builder webClientBuilder,
+                                 @Value("${oauth2.resource-server.oidc-issuer-location}") String oidcIssuerLocation,
+                                 @Value("${oauth2.resource-server.jwk-set-file:}") String jwkSetFile,
+                                 @Value("${oauth2.resource-server.jwk-set-refresh-interval:5m}") Duration refreshInterval,
+                                 @Value("${oauth2.resource-server.jwt-cache.maximum-size:10000}") long maximumSize) {
+        JwkSetSource jwkSource = new JwkSetSource(webClientBuilder.build(), oidcIssuerLocation,
+                                                  jwkSetFile.isBlank() ? null : Path.of(jwkSetFile),
+                                                  refreshInterval, Duration.ofSeconds(10));
+        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSource).build();
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(oidcIssuerLocation));
+        return new CachingJwtDecoder(jwtDecoder, maximumSize);
     }
 
     @Bean